@@ -0,0 +1,169 @@
+// Archives.java — zip / jar browsing for the explorer
+// - An archive is mounted as a read-only NIO zip FileSystem: only the central directory is read,
+//   entries are listed when a folder is entered and nothing is extracted up front
+// - Mounted archives are cached (LRU) so going back into one is free; a changed mtime remounts it
+// - An evicted archive is mounted again when an old entry is used; mounts in use are never closed
+// - The mounted file system is browsed through a Vfs.PathProvider, so entries are Vfs.VfsFiles whose
+//   toPath() is the zip Path (copy, hash and sizes work on it directly)
+
+package main;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+final class Archives {
+
+    private static final int MAX_MOUNTED = 8;
+    private static final Set<String> EXTENSIONS = Set.of("zip", "jar", "war", "ear", "apk");
+
+    // users: open Mounted handles and holds; a mount in use is never closed, only dropped from the
+    // cache and closed by its last user
+    private static final class Mount {
+        final Path key;
+        final FileSystem fs;
+        final long mtime;
+        int users;
+
+        Mount(Path key, FileSystem fs, long mtime) {
+            this.key = key;
+            this.fs = fs;
+            this.mtime = mtime;
+        }
+    }
+
+    // Released with close(); no checked exception
+    interface Hold extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    // access-ordered: the eldest entry is the least recently entered archive
+    private static final LinkedHashMap<Path, Mount> MOUNTS = new LinkedHashMap<>(16, 0.75f, true);
+
+    private Archives() {
+    }
+
+    static boolean isArchive(File f) {
+        if (f == null)
+            return false;
+        String name = f.getName();
+        int dot = name.lastIndexOf('.');
+        return dot > 0 && EXTENSIONS.contains(name.substring(dot + 1).toLowerCase(Locale.ROOT)) && f.isFile();
+    }
+
+    // The archive's root folder, ready to be listed like any other directory
+    static Vfs.VfsFile open(File archive) throws IOException {
+        Path key = archive.toPath().toAbsolutePath().normalize();
+        acquire(key, true).close(); // mount now, so a broken archive is reported here
+        return Vfs.root(new Vfs.PathProvider(archive.getName(), () -> acquire(key, false), archive));
+    }
+
+    // Keeps the archives behind paths mounted until the hold is closed (transfers and hashing
+    // work on zip Paths for a long time); ordinary paths are ignored
+    static synchronized Hold hold(List<Path> paths) {
+        List<Mount> held = new ArrayList<>();
+        for (Path p : paths) {
+            for (Mount m : MOUNTS.values()) {
+                if (m.fs == p.getFileSystem() && m.fs.isOpen() && !held.contains(m)) {
+                    m.users++;
+                    held.add(m);
+                }
+            }
+        }
+        boolean[] closed = new boolean[1];
+        return () -> {
+            synchronized (Archives.class) {
+                if (closed[0])
+                    return;
+                closed[0] = true;
+                held.forEach(Archives::release);
+            }
+        };
+    }
+
+    // checkMtime: remount when the archive changed on disk (explicit opens); uses through an
+    // existing provider skip the stat and only remount a closed file system
+    private static synchronized Vfs.Mounted acquire(Path key, boolean checkMtime) throws IOException {
+        Mount m = MOUNTS.get(key);
+        if (m == null || !m.fs.isOpen() || checkMtime && m.mtime != Files.getLastModifiedTime(key).toMillis())
+            m = mount(key);
+        Mount used = m;
+        used.users++;
+        Path root = used.fs.getPath("/");
+        boolean[] closed = new boolean[1];
+        return new Vfs.Mounted() {
+            @Override
+            public Path root() {
+                return root;
+            }
+
+            @Override
+            public void close() {
+                synchronized (Archives.class) {
+                    if (!closed[0]) {
+                        closed[0] = true;
+                        release(used);
+                    }
+                }
+            }
+        };
+    }
+
+    private static void release(Mount m) {
+        m.users--;
+        if (m.users == 0 && MOUNTS.get(m.key) != m)
+            closeQuietly(m.fs); // evicted or replaced while in use
+        else
+            trim();
+    }
+
+    private static Mount mount(Path key) throws IOException {
+        long mtime = Files.getLastModifiedTime(key).toMillis();
+        Mount old = MOUNTS.remove(key);
+        if (old != null && old.users == 0)
+            closeQuietly(old.fs);
+        FileSystem fs;
+        try {
+            fs = FileSystems.newFileSystem(key, Map.of("accessMode", "readOnly"));
+        } catch (IOException | RuntimeException e) {
+            throw new IOException("not a readable archive: " + key.getFileName()
+                    + (e.getMessage() != null ? " (" + e.getMessage() + ")" : ""), e);
+        }
+        Mount m = new Mount(key, fs, mtime);
+        MOUNTS.put(key, m);
+        trim();
+        return m;
+    }
+
+    // Closes the least recently used idle mounts past MAX_MOUNTED; busy ones wait for their release
+    private static void trim() {
+        Iterator<Mount> it = MOUNTS.values().iterator();
+        int excess = MOUNTS.size() - MAX_MOUNTED;
+        while (excess > 0 && it.hasNext()) {
+            Mount m = it.next();
+            if (m.users > 0)
+                continue;
+            closeQuietly(m.fs);
+            it.remove();
+            excess--;
+        }
+    }
+
+    private static void closeQuietly(FileSystem fs) {
+        try {
+            fs.close();
+        } catch (IOException | UnsupportedOperationException ignored) {
+        }
+    }
+}
@@ -0,0 +1,440 @@
+// CompactListing.java — one directory listing stored as columns instead of File objects
+// - Names are packed as UTF-8 into a single byte arena addressed by int offsets, encoded straight
+//   from the directory stream (no per-entry objects survive the read)
+// - Sizes and mtimes are long[] columns, the directory bit a byte[] of flags
+// - Rows are kept in explorer order (folders first, then natural name order: file2 < file10);
+//   File objects are only made on demand
+// - order() gives other sorts (size, modified, type; either direction) as a row permutation, from
+//   keys built once per row and sorted with Arrays.parallelSort for big folders
+// - filter() narrows a row set by name on the UTF-8 bytes, keeping its order (no re-sort)
+// - About 30-40 bytes per entry instead of a File + path String each (~150 bytes and up)
+// - Archive / remote entries can't be rebuilt from a name, so those listings keep their File[] as well
+
+package main;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Locale;
+
+final class CompactListing {
+
+    static final byte DIR = 1;
+
+    enum SortKey { NAME, SIZE, MODIFIED, TYPE }
+
+    private static final int PARALLEL_MIN = 8192;
+
+    // Sort key for order(): num is size / mtime, text the lower-case extension
+    private record Keyed(int row, boolean dir, long num, String text) {}
+
+    private final File dir;
+    private final String prefix;     // dir path + separator, for building children
+    private final byte[] names;
+    private final int[] offsets;     // name i is names[offsets[i] .. offsets[i + 1])
+    private final long[] sizes;
+    private final long[] mtimes;
+    private final byte[] flags;
+    private final File[] files;      // virtual sources only, else null
+
+    // Packs the rows of c in the given order
+    private CompactListing(File dir, Columns c, int[] order) {
+        this.dir = dir;
+        String p = dir.getPath();
+        this.prefix = p.endsWith(File.separator) ? p : p + File.separator;
+        int n = order.length;
+        offsets = new int[n + 1];
+        sizes = new long[n];
+        mtimes = new long[n];
+        flags = new byte[n];
+        files = c.files != null ? new File[n] : null;
+        names = new byte[c.offsets[n]];
+        int pos = 0;
+        for (int i = 0; i < n; i++) {
+            int r = order[i];
+            int len = c.offsets[r + 1] - c.offsets[r];
+            System.arraycopy(c.names, c.offsets[r], names, pos, len);
+            offsets[i] = pos;
+            pos += len;
+            sizes[i] = c.sizes[r];
+            mtimes[i] = c.mtimes[r];
+            flags[i] = c.flags[r];
+            if (files != null)
+                files[i] = c.files[r];
+        }
+        offsets[n] = pos;
+    }
+
+    // A folder's rows in the order they were read; build() sorts them into explorer order
+    private static final class Columns {
+        byte[] names = new byte[16 * 1024];
+        int[] offsets = new int[257];
+        long[] sizes = new long[256];
+        long[] mtimes = new long[256];
+        byte[] flags = new byte[256];
+        File[] files;    // virtual sources only
+        int n;
+
+        Columns(boolean keepFiles) {
+            files = keepFiles ? new File[256] : null;
+        }
+
+        void add(String name, long size, long mtime, byte fl, File file) {
+            if (n == sizes.length) {
+                int cap = n * 2;
+                offsets = Arrays.copyOf(offsets, cap + 1);
+                sizes = Arrays.copyOf(sizes, cap);
+                mtimes = Arrays.copyOf(mtimes, cap);
+                flags = Arrays.copyOf(flags, cap);
+                if (files != null)
+                    files = Arrays.copyOf(files, cap);
+            }
+            int pos = offsets[n];
+            if (pos + 3 * name.length() > names.length) // a UTF-16 char is at most 3 UTF-8 bytes
+                names = Arrays.copyOf(names, Math.max(names.length * 2, pos + 3 * name.length()));
+            offsets[n + 1] = utf8(name, names, pos);
+            sizes[n] = size;
+            mtimes[n] = mtime;
+            flags[n] = fl;
+            if (files != null)
+                files[n] = file;
+            n++;
+        }
+
+        // Same bytes as String.getBytes(UTF_8), written in place; a lone surrogate becomes '?'
+        private static int utf8(String s, byte[] out, int pos) {
+            for (int k = 0, len = s.length(); k < len; k++) {
+                char c = s.charAt(k);
+                if (c < 0x80) {
+                    out[pos++] = (byte) c;
+                } else if (c < 0x800) {
+                    out[pos++] = (byte) (0xC0 | c >> 6);
+                    out[pos++] = (byte) (0x80 | c & 0x3F);
+                } else if (Character.isHighSurrogate(c) && k + 1 < len && Character.isLowSurrogate(s.charAt(k + 1))) {
+                    int cp = Character.toCodePoint(c, s.charAt(++k));
+                    out[pos++] = (byte) (0xF0 | cp >> 18);
+                    out[pos++] = (byte) (0x80 | cp >> 12 & 0x3F);
+                    out[pos++] = (byte) (0x80 | cp >> 6 & 0x3F);
+                    out[pos++] = (byte) (0x80 | cp & 0x3F);
+                } else if (Character.isSurrogate(c)) {
+                    out[pos++] = '?';
+                } else {
+                    out[pos++] = (byte) (0xE0 | c >> 12);
+                    out[pos++] = (byte) (0x80 | c >> 6 & 0x3F);
+                    out[pos++] = (byte) (0x80 | c & 0x3F);
+                }
+            }
+            return pos;
+        }
+
+        private String name(int i) {
+            return new String(names, offsets[i], offsets[i + 1] - offsets[i], StandardCharsets.UTF_8);
+        }
+
+        // Explorer order: folders first, then naturalKey order, then the plain name
+        int compare(int a, int b) {
+            boolean ad = (flags[a] & DIR) != 0, bd = (flags[b] & DIR) != 0;
+            if (ad != bd)
+                return ad ? -1 : 1;
+            NaturalCursor x = new NaturalCursor(names, offsets[a], offsets[a + 1]);
+            NaturalCursor y = new NaturalCursor(names, offsets[b], offsets[b + 1]);
+            while (true) {
+                int cx = x.next(), cy = y.next();
+                if (cx == NaturalCursor.OTHER || cy == NaturalCursor.OTHER) {
+                    // non-ASCII: lower-casing isn't byte-wise, so compare the real keys
+                    String na = name(a), nb = name(b);
+                    int k = naturalKey(na).compareTo(naturalKey(nb));
+                    return k != 0 ? k : na.compareTo(nb);
+                }
+                if (cx != cy)
+                    return cx - cy;
+                if (cx == NaturalCursor.END) // same key, and both names are ASCII
+                    return Arrays.compare(names, offsets[a], offsets[a + 1], names, offsets[b], offsets[b + 1]);
+            }
+        }
+    }
+
+    // Walks the naturalKey of an ASCII name one char at a time, straight off the arena bytes
+    private static final class NaturalCursor {
+        static final int END = -1;
+        static final int OTHER = -2; // a non-ASCII byte
+
+        private final byte[] b;
+        private final int end;
+        private int pos;
+        private int run = -1; // end of the digit run being emitted
+
+        NaturalCursor(byte[] b, int from, int to) {
+            this.b = b;
+            this.pos = from;
+            this.end = to;
+        }
+
+        int next() {
+            if (pos < run)
+                return b[pos++];
+            run = -1;
+            if (pos == end)
+                return END;
+            int c = b[pos];
+            if (c < 0)
+                return OTHER;
+            if (c < '0' || c > '9') {
+                pos++;
+                return c >= 'A' && c <= 'Z' ? c + 32 : c;
+            }
+            int e = pos;
+            while (e < end && b[e] >= '0' && b[e] <= '9')
+                e++;
+            while (pos < e - 1 && b[pos] == '0')
+                pos++;
+            run = e;
+            return 0x20 + (e - pos);
+        }
+    }
+
+    // One pass over the folder: each entry is stat'ed exactly once (links are followed like
+    // File.isDirectory does). Null when the folder can't be read, like File.listFiles.
+    static CompactListing read(File dir) {
+        Columns c = new Columns(false);
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir.toPath())) {
+            for (Path p : ds) {
+                BasicFileAttributes a = attributes(p);
+                boolean d = a != null && a.isDirectory();
+                c.add(p.getFileName().toString(), a == null || d ? 0 : a.size(),
+                        a == null ? 0 : a.lastModifiedTime().toMillis(), d ? DIR : 0, null);
+            }
+        } catch (IOException | DirectoryIteratorException | SecurityException e) {
+            return null;
+        }
+        return build(dir, c);
+    }
+
+    // From entries that already exist as File objects (archive / remote sources)
+    static CompactListing of(File dir, File[] entries) {
+        Columns c = new Columns(true);
+        for (File f : entries) {
+            boolean d = f.isDirectory();
+            c.add(f.getName(), d ? 0 : f.length(), f.lastModified(), d ? DIR : 0, f);
+        }
+        return build(dir, c);
+    }
+
+    private static CompactListing build(File dir, Columns c) {
+        int[] order = new int[c.n];
+        for (int i = 0; i < order.length; i++)
+            order[i] = i;
+        mergeSort(order, new int[order.length], 0, order.length, c);
+        return new CompactListing(dir, c, order);
+    }
+
+    // Stable sort of row numbers; int[] keeps it free of boxing
+    private static void mergeSort(int[] a, int[] tmp, int from, int to, Columns c) {
+        if (to - from < 16) {
+            for (int i = from + 1; i < to; i++) {
+                int v = a[i], j = i - 1;
+                while (j >= from && c.compare(a[j], v) > 0) {
+                    a[j + 1] = a[j];
+                    j--;
+                }
+                a[j + 1] = v;
+            }
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        mergeSort(a, tmp, from, mid, c);
+        mergeSort(a, tmp, mid, to, c);
+        if (c.compare(a[mid - 1], a[mid]) <= 0)
+            return;
+        System.arraycopy(a, from, tmp, from, to - from);
+        for (int i = from, l = from, r = mid; i < to; i++)
+            a[i] = r >= to || l < mid && c.compare(tmp[l], tmp[r]) <= 0 ? tmp[l++] : tmp[r++];
+    }
+
+    // Case-insensitive key whose plain String order is natural order: every run of digits becomes
+    // its length (one char, below the letters for runs up to 64 digits) followed by the digits
+    // without leading zeros, so "file2" < "file10" < "File11".
+    static String naturalKey(String name) {
+        String s = name.toLowerCase(Locale.ROOT);
+        StringBuilder b = null;
+        int n = s.length();
+        for (int i = 0; i < n; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') {
+                if (b != null)
+                    b.append(c);
+                continue;
+            }
+            if (b == null)
+                b = new StringBuilder(n + 4).append(s, 0, i);
+            int start = i;
+            while (i < n && s.charAt(i) >= '0' && s.charAt(i) <= '9')
+                i++;
+            int lead = start;
+            while (lead < i - 1 && s.charAt(lead) == '0')
+                lead++;
+            b.append((char) (0x20 + (i - lead))).append(s, lead, i);
+            i--;
+        }
+        return b == null ? s : b.toString();
+    }
+
+    private static BasicFileAttributes attributes(Path p) {
+        try {
+            return Files.readAttributes(p, BasicFileAttributes.class);
+        } catch (IOException | UnsupportedOperationException e) {
+            try { // dangling link: describe the link itself
+                return Files.readAttributes(p, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            } catch (IOException ex) {
+                return null;
+            }
+        }
+    }
+
+    File dir() {
+        return dir;
+    }
+
+    int size() {
+        return sizes.length;
+    }
+
+    String name(int i) {
+        return new String(names, offsets[i], offsets[i + 1] - offsets[i], StandardCharsets.UTF_8);
+    }
+
+    long length(int i) {
+        return sizes[i];
+    }
+
+    boolean isDir(int i) {
+        return (flags[i] & DIR) != 0;
+    }
+
+    // Row permutation for a sort. Folders stay first; ties fall back to name order. NAME ascending
+    // is the stored order and costs nothing.
+    int[] order(SortKey key, boolean descending) {
+        int n = size();
+        int[] out = new int[n];
+        if (key == SortKey.NAME && !descending) {
+            for (int i = 0; i < n; i++)
+                out[i] = i;
+            return out;
+        }
+        Keyed[] keys = new Keyed[n];
+        for (int i = 0; i < n; i++) {
+            long num = key == SortKey.SIZE ? sizes[i] : key == SortKey.MODIFIED ? mtimes[i] : 0;
+            keys[i] = new Keyed(i, isDir(i), num, key == SortKey.TYPE ? extension(i) : null);
+        }
+        Comparator<Keyed> primary = switch (key) {
+            case NAME -> (a, b) -> 0;
+            case SIZE, MODIFIED -> (a, b) -> Long.compare(a.num, b.num);
+            case TYPE -> (a, b) -> a.text.compareTo(b.text);
+        };
+        // rows are stored in name order, so comparing row numbers is comparing names
+        Comparator<Keyed> within = primary.thenComparingInt(Keyed::row);
+        Comparator<Keyed> c = (a, b) -> {
+            if (a.dir != b.dir)
+                return a.dir ? -1 : 1;
+            int r = within.compare(a, b);
+            return descending ? -r : r;
+        };
+        if (n >= PARALLEL_MIN)
+            Arrays.parallelSort(keys, c);
+        else
+            Arrays.sort(keys, c);
+        for (int i = 0; i < n; i++)
+            out[i] = keys[i].row;
+        return out;
+    }
+
+    // The rows of `rows` whose name contains query (case-insensitive), in the same order. ASCII
+    // queries are matched on the arena bytes directly; others decode the candidate names.
+    int[] filter(int[] rows, String query) {
+        String q = query.toLowerCase(Locale.ROOT);
+        byte[] qb = q.getBytes(StandardCharsets.UTF_8);
+        boolean ascii = qb.length == q.length();
+        int[] out = new int[rows.length];
+        int m = 0;
+        for (int row : rows) {
+            boolean hit = ascii ? containsAscii(offsets[row], offsets[row + 1], qb)
+                    : name(row).toLowerCase(Locale.ROOT).contains(q);
+            if (hit)
+                out[m++] = row;
+        }
+        return Arrays.copyOf(out, m);
+    }
+
+    private boolean containsAscii(int from, int to, byte[] q) {
+        int last = to - q.length;
+        outer:
+        for (int i = from; i <= last; i++) {
+            for (int j = 0; j < q.length; j++) {
+                byte b = names[i + j];
+                if (b >= 'A' && b <= 'Z')
+                    b += 32;
+                if (b != q[j])
+                    continue outer;
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private String extension(int i) {
+        if (isDir(i))
+            return "";
+        int from = offsets[i], to = offsets[i + 1];
+        for (int k = to - 1; k > from; k--)
+            if (names[k] == '.')
+                return new String(names, k + 1, to - k - 1, StandardCharsets.UTF_8).toLowerCase(Locale.ROOT);
+        return "";
+    }
+
+    // Entries are in explorer order, so the folders are exactly rows [0, folderCount)
+    int folderCount() {
+        int n = 0;
+        while (n < flags.length && (flags[n] & DIR) != 0)
+            n++;
+        return n;
+    }
+
+    File file(int i) {
+        return files != null ? files[i] : new File(prefix + name(i));
+    }
+
+    // Row of an entry of this folder, or -1; compares bytes in the arena, nothing is decoded
+    int indexOf(File f) {
+        if (f == null)
+            return -1;
+        if (files != null) {
+            for (int i = 0; i < files.length; i++)
+                if (files[i].equals(f))
+                    return i;
+            return -1;
+        }
+        File parent = f.getParentFile();
+        if (parent == null || !parent.equals(dir))
+            return -1;
+        byte[] key = f.getName().getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i < sizes.length; i++) {
+            int from = offsets[i], to = offsets[i + 1];
+            if (to - from == key.length && Arrays.equals(names, from, to, key, 0, key.length))
+                return i;
+        }
+        return -1;
+    }
+
+    // Approximate heap held by the columns (excluding the optional File[] of virtual sources)
+    long footprintBytes() {
+        return names.length + 4L * offsets.length + 8L * sizes.length + 8L * mtimes.length + flags.length;
+    }
+}
@@ -0,0 +1,336 @@
+// ContentSearch.java — parallel "grep" over a directory tree for the explorer
+// - Directories fan out as fork/join tasks; files are scanned in small batches
+// - Files are memory-mapped in windows; literal queries use a byte-level Horspool matcher
+// - Anything with a NUL byte in its first 8 KB is treated as binary and skipped
+// - Matches are pushed to a sink as they are found; stats are live counters
+
+package main;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+final class ContentSearch {
+
+    record Match(Path file, long line, String text) {}
+
+    private static final int SNIFF_BYTES = 8192;
+    private static final long LITERAL_WINDOW = 64L << 20;
+    private static final long REGEX_WINDOW = 8L << 20;
+    private static final int BATCH = 32;
+    private static final int MAX_MATCHES_PER_FILE = 200;
+    private static final int MAX_LINE_CHARS = 240;
+
+    private final Path root;
+    private final Consumer<Match> sink;
+    private final boolean ignoreCase;
+    private final byte[] needle;      // literal mode (ASCII-lowercased when ignoreCase)
+    private final int[] skip;         // Horspool shift table
+    private final Pattern pattern;    // regex mode
+
+    private final LongAdder files = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder matches = new LongAdder();
+    private final LongAdder binaries = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+
+    private volatile boolean cancelled;
+    private volatile boolean done;
+    private volatile long startNanos;
+    private volatile long endNanos;
+    private ForkJoinPool pool;
+
+    // throws PatternSyntaxException for a bad regex
+    ContentSearch(Path root, String query, boolean regex, boolean ignoreCase, Consumer<Match> sink) {
+        this.root = root;
+        this.sink = sink;
+        this.ignoreCase = ignoreCase;
+        if (regex) {
+            pattern = Pattern.compile(query, ignoreCase ? Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE : 0);
+            needle = null;
+            skip = null;
+        } else {
+            pattern = null;
+            needle = (ignoreCase ? query.toLowerCase(Locale.ROOT) : query).getBytes(StandardCharsets.UTF_8);
+            skip = new int[256];
+            java.util.Arrays.fill(skip, needle.length);
+            for (int i = 0; i < needle.length - 1; i++)
+                skip[needle[i] & 0xFF] = needle.length - 1 - i;
+        }
+    }
+
+    void start(Runnable onDone) {
+        startNanos = System.nanoTime();
+        pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        Thread t = new Thread(() -> {
+            try {
+                pool.invoke(new DirTask(root));
+            } finally {
+                endNanos = System.nanoTime();
+                done = true;
+                pool.shutdown();
+                onDone.run();
+            }
+        }, "content-search");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    void cancel() {
+        cancelled = true;
+    }
+
+    boolean isDone() {
+        return done;
+    }
+
+    boolean isCancelled() {
+        return cancelled;
+    }
+
+    long filesScanned() {
+        return files.sum();
+    }
+
+    long bytesScanned() {
+        return bytes.sum();
+    }
+
+    long matchCount() {
+        return matches.sum();
+    }
+
+    long binariesSkipped() {
+        return binaries.sum();
+    }
+
+    long errorCount() {
+        return errors.sum();
+    }
+
+    double elapsedSeconds() {
+        long end = done ? endNanos : System.nanoTime();
+        return Math.max(1e-9, (end - startNanos) / 1e9);
+    }
+
+    // ===== Tree walk =====
+    private final class DirTask extends RecursiveAction {
+        private final Path dir;
+
+        DirTask(Path dir) {
+            this.dir = dir;
+        }
+
+        @Override
+        protected void compute() {
+            if (cancelled)
+                return;
+            List<RecursiveAction> forked = new ArrayList<>();
+            List<Path> batch = new ArrayList<>(BATCH);
+            try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir)) {
+                for (Path p : ds) {
+                    if (cancelled)
+                        break;
+                    BasicFileAttributes a;
+                    try {
+                        a = Files.readAttributes(p, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    } catch (IOException e) {
+                        errors.increment();
+                        continue;
+                    }
+                    if (a.isDirectory()) {
+                        DirTask t = new DirTask(p);
+                        t.fork();
+                        forked.add(t);
+                    } else if (a.isRegularFile() && a.size() > 0) {
+                        batch.add(p);
+                        if (batch.size() == BATCH) {
+                            FileBatch fb = new FileBatch(batch);
+                            fb.fork();
+                            forked.add(fb);
+                            batch = new ArrayList<>(BATCH);
+                        }
+                    }
+                }
+            } catch (IOException | DirectoryIteratorException e) {
+                errors.increment();
+            }
+            for (Path p : batch)
+                scan(p);
+            for (RecursiveAction t : forked)
+                t.join();
+        }
+    }
+
+    private final class FileBatch extends RecursiveAction {
+        private final List<Path> paths;
+
+        FileBatch(List<Path> paths) {
+            this.paths = paths;
+        }
+
+        @Override
+        protected void compute() {
+            for (Path p : paths) {
+                if (cancelled)
+                    return;
+                scan(p);
+            }
+        }
+    }
+
+    // ===== Per-file scan =====
+    private void scan(Path file) {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = ch.size();
+            if (size == 0)
+                return;
+            ByteBuffer head = ByteBuffer.allocate((int) Math.min(SNIFF_BYTES, size));
+            ch.read(head, 0);
+            head.flip();
+            for (int i = 0; i < head.limit(); i++) {
+                if (head.get(i) == 0) {
+                    binaries.increment();
+                    return;
+                }
+            }
+            files.increment();
+            if (pattern != null)
+                scanRegex(file, ch, size);
+            else if (needle.length > 0)
+                scanLiteral(file, ch, size);
+            bytes.add(size);
+        } catch (IOException | UnsupportedOperationException e) {
+            errors.increment();
+        }
+    }
+
+    private void scanLiteral(Path file, FileChannel ch, long size) throws IOException {
+        int n = needle.length;
+        long line = 1;
+        long countedTo = 0;
+        int found = 0;
+        for (long base = 0; base < size && !cancelled; base += LITERAL_WINDOW) {
+            long len = Math.min(size - base, LITERAL_WINDOW + n - 1);
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, base, len);
+            int limit = (int) Math.min(len, LITERAL_WINDOW); // matches must start inside the window proper
+            int i = 0;
+            while (i <= len - n && i < limit) {
+                int j = n - 1;
+                while (j >= 0 && lower(buf.get(i + j)) == needle[j])
+                    j--;
+                if (j < 0) {
+                    line += countNewlines(buf, (int) (countedTo - base), i);
+                    countedTo = base + i;
+                    sink.accept(new Match(file, line, lineAround(buf, i, (int) len)));
+                    matches.increment();
+                    if (++found >= MAX_MATCHES_PER_FILE)
+                        return;
+                    // one hit per line, like grep
+                    i += n;
+                    while (i < limit && buf.get(i - 1) != '\n')
+                        i++;
+                } else {
+                    i += skip[lower(buf.get(i + n - 1)) & 0xFF];
+                }
+            }
+            int end = (int) Math.min(len, LITERAL_WINDOW);
+            line += countNewlines(buf, (int) (countedTo - base), end);
+            countedTo = base + end;
+        }
+    }
+
+    private void scanRegex(Path file, FileChannel ch, long size) throws IOException {
+        CharsetDecoder dec = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        long line = 1;
+        int found = 0;
+        long base = 0;
+        while (base < size && !cancelled) {
+            long len = Math.min(size - base, REGEX_WINDOW);
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, base, len);
+            // cut the window at the last newline so no line straddles two windows
+            int cut = (int) len;
+            if (base + len < size) {
+                while (cut > 0 && buf.get(cut - 1) != '\n')
+                    cut--;
+                if (cut == 0)
+                    cut = (int) len;
+            }
+            buf.limit(cut);
+            CharBuffer text = dec.reset().decode(buf);
+            Matcher m = pattern.matcher(text);
+            int countedTo = 0;
+            long lastLine = -1;
+            while (m.find() && !cancelled) {
+                for (int k = countedTo; k < m.start(); k++)
+                    if (text.get(k) == '\n')
+                        line++;
+                countedTo = m.start();
+                if (line == lastLine)
+                    continue;
+                lastLine = line;
+                int ls = m.start();
+                while (ls > 0 && text.get(ls - 1) != '\n')
+                    ls--;
+                int le = m.start();
+                while (le < text.length() && text.get(le) != '\n' && le - ls < MAX_LINE_CHARS)
+                    le++;
+                sink.accept(new Match(file, line, text.subSequence(ls, le).toString().strip()));
+                matches.increment();
+                if (++found >= MAX_MATCHES_PER_FILE)
+                    return;
+            }
+            for (int k = countedTo; k < text.length(); k++)
+                if (text.get(k) == '\n')
+                    line++;
+            base += cut;
+        }
+    }
+
+    private byte lower(byte b) {
+        return (ignoreCase && b >= 'A' && b <= 'Z') ? (byte) (b + 32) : b;
+    }
+
+    private static int countNewlines(ByteBuffer buf, int from, int to) {
+        int c = 0;
+        for (int k = Math.max(0, from); k < to; k++)
+            if (buf.get(k) == '\n')
+                c++;
+        return c;
+    }
+
+    private static String lineAround(ByteBuffer buf, int at, int len) {
+        int ls = at;
+        while (ls > 0 && buf.get(ls - 1) != '\n' && at - ls < MAX_LINE_CHARS / 2)
+            ls--;
+        int le = at;
+        while (le < len && buf.get(le) != '\n' && le - ls < MAX_LINE_CHARS)
+            le++;
+        byte[] b = new byte[le - ls];
+        buf.get(ls, b);
+        return new String(b, StandardCharsets.UTF_8).strip();
+    }
+}
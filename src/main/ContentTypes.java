@@ -0,0 +1,264 @@
+// ContentTypes.java — in-process MIME type detection (replaces Files.probeContentType)
+// - byName(): extension lookup in an open-addressing table, case-insensitive, no allocation
+// - byContent(): the first 64 bytes walked down a trie of magic prefixes ('.' bytes match anything,
+//   so "RIFF....WEBP" and "....ftyp" are one path each); the longest match wins
+// - detect(): content first, refined by the extension for containers (a zip is also a docx / jar / apk),
+//   then the extension, then a plain-text check
+// - Tables are built once in the static initializer and never change, so every call is thread-safe;
+//   the only per-call allocation is the channel used to read the header
+
+package main;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Set;
+
+final class ContentTypes {
+
+    static final int HEAD = 64;
+
+    // types that only say "some container"; a known extension tells more
+    private static final Set<String> GENERIC = Set.of("application/zip", "application/x-ole-storage",
+            "application/xml", "text/plain", "application/octet-stream", "video/mp4");
+
+    private static final String[] EXTENSIONS = {
+            // text / code
+            "txt", "text/plain", "log", "text/plain", "md", "text/markdown", "csv", "text/csv", "tsv",
+            "text/tab-separated-values", "html", "text/html", "htm", "text/html", "css", "text/css", "js",
+            "text/javascript", "mjs", "text/javascript", "json", "application/json", "xml", "application/xml",
+            "yaml", "application/yaml", "yml", "application/yaml", "toml", "application/toml", "ini", "text/plain",
+            "cfg", "text/plain", "conf", "text/plain", "properties", "text/x-java-properties", "java", "text/x-java",
+            "kt", "text/x-kotlin", "c", "text/x-c", "h", "text/x-c", "cpp", "text/x-c++", "hpp", "text/x-c++",
+            "cs", "text/x-csharp", "py", "text/x-python", "rb", "text/x-ruby", "go", "text/x-go", "rs",
+            "text/x-rust", "sh", "application/x-sh", "bat", "application/x-bat", "ps1", "text/plain", "sql",
+            "application/sql", "fxml", "application/xml", "svg", "image/svg+xml", "rtf", "application/rtf",
+            // documents
+            "pdf", "application/pdf", "doc", "application/msword", "docx",
+            "application/vnd.openxmlformats-officedocument.wordprocessingml.document", "xls",
+            "application/vnd.ms-excel", "xlsx", "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet",
+            "ppt", "application/vnd.ms-powerpoint", "pptx",
+            "application/vnd.openxmlformats-officedocument.presentationml.presentation", "odt",
+            "application/vnd.oasis.opendocument.text", "ods", "application/vnd.oasis.opendocument.spreadsheet",
+            "odp", "application/vnd.oasis.opendocument.presentation", "epub", "application/epub+zip", "ps",
+            "application/postscript",
+            // images
+            "png", "image/png", "jpg", "image/jpeg", "jpeg", "image/jpeg", "gif", "image/gif", "bmp", "image/bmp",
+            "webp", "image/webp", "tif", "image/tiff", "tiff", "image/tiff", "ico", "image/vnd.microsoft.icon",
+            "heic", "image/heic", "avif", "image/avif", "psd", "image/vnd.adobe.photoshop",
+            // audio / video
+            "mp3", "audio/mpeg", "wav", "audio/wav", "flac", "audio/flac", "ogg", "audio/ogg", "oga", "audio/ogg",
+            "opus", "audio/opus", "m4a", "audio/mp4", "aac", "audio/aac", "mid", "audio/midi", "midi", "audio/midi",
+            "mp4", "video/mp4", "m4v", "video/mp4", "mov", "video/quicktime", "mkv", "video/x-matroska", "webm",
+            "video/webm", "avi", "video/x-msvideo", "wmv", "video/x-ms-wmv",
+            // archives / binaries
+            "zip", "application/zip", "jar", "application/java-archive", "war", "application/java-archive", "ear",
+            "application/java-archive", "apk", "application/vnd.android.package-archive", "gz", "application/gzip",
+            "tgz", "application/gzip", "bz2", "application/x-bzip2", "xz", "application/x-xz", "zst",
+            "application/zstd", "7z", "application/x-7z-compressed", "rar", "application/vnd.rar", "tar",
+            "application/x-tar", "iso", "application/x-iso9660-image", "exe", "application/x-msdownload", "dll",
+            "application/x-msdownload", "msi", "application/x-msi", "class", "application/java-vm", "so",
+            "application/x-sharedlib", "deb", "application/vnd.debian.binary-package", "rpm",
+            "application/x-rpm", "wasm", "application/wasm", "db", "application/vnd.sqlite3", "sqlite",
+            "application/vnd.sqlite3",
+            // fonts
+            "ttf", "font/ttf", "otf", "font/otf", "woff", "font/woff", "woff2", "font/woff2",
+    };
+
+    private static final String[][] MAGIC = {
+            { "\u0089PNG\r\n\u001a\n", "image/png" },
+            { "\u00ff\u00d8\u00ff", "image/jpeg" },
+            { "GIF87a", "image/gif" }, { "GIF89a", "image/gif" },
+            { "BM....\u0000\u0000\u0000\u0000", "image/bmp" },
+            { "RIFF....WEBP", "image/webp" }, { "RIFF....WAVE", "audio/wav" }, { "RIFF....AVI ", "video/x-msvideo" },
+            { "II*\u0000", "image/tiff" }, { "MM\u0000*", "image/tiff" },
+            { "\u0000\u0000\u0001\u0000", "image/vnd.microsoft.icon" },
+            { "8BPS", "image/vnd.adobe.photoshop" },
+            { "....ftyp", "video/mp4" }, { "....ftypheic", "image/heic" }, { "....ftypheix", "image/heic" },
+            { "....ftypmif1", "image/heif" }, { "....ftypavif", "image/avif" }, { "....ftypM4A ", "audio/mp4" },
+            { "....ftypqt  ", "video/quicktime" },
+            { "\u001aE\u00df\u00a3", "video/x-matroska" },
+            { "ID3", "audio/mpeg" }, { "\u00ff\u00fb", "audio/mpeg" }, { "\u00ff\u00f3", "audio/mpeg" },
+            { "\u00ff\u00f2", "audio/mpeg" }, { "OggS", "audio/ogg" }, { "fLaC", "audio/flac" },
+            { "MThd", "audio/midi" },
+            { "%PDF-", "application/pdf" }, { "%!PS", "application/postscript" }, { "{\\rtf", "application/rtf" },
+            { "\u00d0\u00cf\u0011\u00e0\u00a1\u00b1\u001a\u00e1", "application/x-ole-storage" },
+            { "PK\u0003\u0004", "application/zip" }, { "PK\u0005\u0006", "application/zip" },
+            { "PK\u0003\u0004..........................mimetypeapplication/epub+zip", "application/epub+zip" },
+            { "\u001f\u008b", "application/gzip" }, { "BZh", "application/x-bzip2" },
+            { "\u00fd7zXZ\u0000", "application/x-xz" }, { "7z\u00bc\u00af'\u001c", "application/x-7z-compressed" },
+            { "Rar!\u001a\u0007", "application/vnd.rar" }, { "(\u00b5/\u00fd", "application/zstd" },
+            { "\u007fELF", "application/x-executable" }, { "MZ", "application/x-msdownload" },
+            { "\u00ca\u00fe\u00ba\u00be", "application/java-vm" },
+            { "\u0000asm", "application/wasm" },
+            { "SQLite format 3\u0000", "application/vnd.sqlite3" },
+            { "!<arch>\ndebian", "application/vnd.debian.binary-package" },
+            { "\u00ed\u00ab\u00ee\u00db", "application/x-rpm" },
+            { "wOFF", "font/woff" }, { "wOF2", "font/woff2" }, { "OTTO", "font/otf" },
+            { "\u0000\u0001\u0000\u0000\u0000", "font/ttf" },
+            { "<?xml", "application/xml" }, { "<svg", "image/svg+xml" },
+            { "<!DOCTYPE html", "text/html" }, { "<!doctype html", "text/html" }, { "<html", "text/html" },
+            { "#!", "text/x-shellscript" }, { "\u00ef\u00bb\u00bf", "text/plain" },
+    };
+
+    // ---- extension table: open addressing over lower-cased extensions ----
+
+    private static final String[] EXT_KEYS;
+    private static final String[] EXT_TYPES;
+    private static final int EXT_MASK;
+
+    // ---- magic trie ----
+
+    private static final class Node {
+        byte[] keys = new byte[0];   // sorted
+        Node[] kids = new Node[0];
+        Node any;                    // '.' edge
+        String type;
+
+        Node child(byte b, boolean wildcard) {
+            if (wildcard)
+                return any != null ? any : (any = new Node());
+            int i = Arrays.binarySearch(keys, b);
+            if (i >= 0)
+                return kids[i];
+            i = -i - 1;
+            Node n = new Node();
+            keys = insert(keys, i, b);
+            Node[] k = Arrays.copyOf(kids, kids.length + 1);
+            System.arraycopy(kids, i, k, i + 1, kids.length - i);
+            k[i] = n;
+            kids = k;
+            return n;
+        }
+
+        Node exact(byte b) {
+            int i = Arrays.binarySearch(keys, b);
+            return i >= 0 ? kids[i] : null;
+        }
+
+        private static byte[] insert(byte[] a, int i, byte b) {
+            byte[] out = Arrays.copyOf(a, a.length + 1);
+            System.arraycopy(a, i, out, i + 1, a.length - i);
+            out[i] = b;
+            return out;
+        }
+    }
+
+    private static final Node ROOT = new Node();
+
+    private static final ThreadLocal<ByteBuffer> HEADS = ThreadLocal.withInitial(() -> ByteBuffer.allocate(HEAD));
+
+    static {
+        int cap = Integer.highestOneBit(EXTENSIONS.length) * 2;
+        EXT_KEYS = new String[cap];
+        EXT_TYPES = new String[cap];
+        EXT_MASK = cap - 1;
+        for (int i = 0; i < EXTENSIONS.length; i += 2) {
+            String k = EXTENSIONS[i];
+            int slot = hash(k, 0, k.length()) & EXT_MASK;
+            while (EXT_KEYS[slot] != null)
+                slot = (slot + 1) & EXT_MASK;
+            EXT_KEYS[slot] = k;
+            EXT_TYPES[slot] = EXTENSIONS[i + 1];
+        }
+        for (String[] m : MAGIC) {
+            // patterns are written with chars 0-255 standing for bytes
+            Node n = ROOT;
+            for (int i = 0; i < m[0].length(); i++) {
+                char c = m[0].charAt(i);
+                n = n.child((byte) c, c == '.');
+            }
+            n.type = m[1];
+        }
+    }
+
+    private ContentTypes() {
+    }
+
+    // ---- lookups ----
+
+    // Type from the file name's extension, or null
+    static String byName(String name) {
+        int dot = name.lastIndexOf('.');
+        if (dot < 0 || dot == name.length() - 1)
+            return null;
+        int from = dot + 1, len = name.length() - from;
+        int slot = hash(name, from, name.length()) & EXT_MASK;
+        for (String k; (k = EXT_KEYS[slot]) != null; slot = (slot + 1) & EXT_MASK)
+            if (k.length() == len && name.regionMatches(true, from, k, 0, len))
+                return EXT_TYPES[slot];
+        return null;
+    }
+
+    // Type from the leading bytes b[0, len), or null
+    static String byContent(byte[] b, int len) {
+        return longest(ROOT, b, 0, Math.min(len, HEAD), null);
+    }
+
+    // Depth-first down exact and wildcard edges, keeping the deepest typed node
+    private static String longest(Node n, byte[] b, int i, int len, String best) {
+        if (n.type != null)
+            best = n.type;
+        if (i >= len)
+            return best;
+        Node e = n.exact(b[i]);
+        String viaExact = e != null ? longest(e, b, i + 1, len, null) : null;
+        String viaAny = n.any != null ? longest(n.any, b, i + 1, len, null) : null;
+        if (viaExact != null && viaAny != null) // both matched deeper: prefer the more specific path
+            return viaExact;
+        return viaExact != null ? viaExact : viaAny != null ? viaAny : best;
+    }
+
+    // Full detection for a local file: content, refined by the extension; null when both are unknown
+    static String detect(Path p) {
+        String ext = byName(p.getFileName() == null ? "" : p.getFileName().toString());
+        ByteBuffer head = HEADS.get().clear();
+        try (FileChannel ch = FileChannel.open(p, StandardOpenOption.READ)) {
+            while (head.hasRemaining() && ch.read(head) > 0) {
+            }
+        } catch (IOException | UnsupportedOperationException | SecurityException e) {
+            return ext;
+        }
+        int n = head.position();
+        String magic = byContent(head.array(), n);
+        if (magic != null)
+            return ext != null && GENERIC.contains(magic) ? ext : magic;
+        if (ext != null)
+            return ext;
+        return n > 0 && looksLikeText(head.array(), n) ? "text/plain" : null;
+    }
+
+    // No NULs and valid-looking UTF-8 / ASCII (a sequence cut off by the end of the header is fine)
+    private static boolean looksLikeText(byte[] b, int len) {
+        for (int i = 0; i < len; i++) {
+            int c = b[i] & 0xFF;
+            if (c == 0 || (c < 0x20 && c != '\n' && c != '\r' && c != '\t' && c != '\f' && c != 0x1b))
+                return false;
+            if (c >= 0x80) {
+                int need = c >= 0xF0 ? 3 : c >= 0xE0 ? 2 : c >= 0xC0 ? 1 : -1;
+                if (need < 0)
+                    return false;
+                for (int k = 1; k <= need && i + k < len; k++)
+                    if ((b[i + k] & 0xC0) != 0x80)
+                        return false;
+                i += need;
+            }
+        }
+        return true;
+    }
+
+    // Case-insensitive hash of s[from, to); ASCII only matters for extensions
+    private static int hash(String s, int from, int to) {
+        int h = 0;
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            if (c >= 'A' && c <= 'Z')
+                c += 32;
+            h = 31 * h + c;
+        }
+        return h ^ (h >>> 16);
+    }
+}
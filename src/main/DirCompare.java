@@ -0,0 +1,315 @@
+// DirCompare.java — compares two folder trees (e.g. a thumbdrive copy against its source)
+// - Both trees are walked together, one fork/join task per relative folder, so each level is listed on
+//   both sides at once and entries are matched by relative path
+// - Files with the same size and mtime (within 2 s, FAT's resolution) are taken as SAME without
+//   reading them; a different size is DIFFERENT at once
+// - Only same-size files whose mtimes disagree (or every pair, in verify mode) are read: first the
+//   first + last 64 KB, then, if those match, a SHA-256 of each side (the two sides hashed in parallel)
+// - A folder that exists on one side only is reported once, not file by file
+// - Results go to a sink as they are classified, so the view fills while the walk is running
+
+package main;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+final class DirCompare {
+
+    enum Status { SAME, DIFFERENT, ONLY_LEFT, ONLY_RIGHT }
+
+    // rel uses '/' separators; sizes / mtimes are -1 for the side an entry is missing from
+    record Entry(String rel, Status status, boolean dir, long leftSize, long rightSize, long leftMtime,
+                 long rightMtime, String why) {}
+
+    private static final long MTIME_SLACK_MS = 2000;
+    private static final int EDGE = 64 * 1024;
+
+    private final Path left;
+    private final Path right;
+    private final boolean verify;
+    private final Consumer<Entry> sink;
+
+    private final LongAdder[] counts = new LongAdder[Status.values().length];
+    private final LongAdder compared = new LongAdder();
+    private final LongAdder hashed = new LongAdder();
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private volatile boolean cancelled;
+    private volatile boolean done;
+    private volatile long startNanos;
+    private volatile long endNanos;
+
+    DirCompare(Path left, Path right, boolean verify, Consumer<Entry> sink) {
+        this.left = left;
+        this.right = right;
+        this.verify = verify;
+        this.sink = sink;
+        for (int i = 0; i < counts.length; i++)
+            counts[i] = new LongAdder();
+    }
+
+    void start(Runnable onDone) {
+        startNanos = System.nanoTime();
+        Thread t = new Thread(() -> {
+            ForkJoinPool pool = new ForkJoinPool(Math.max(2, Runtime.getRuntime().availableProcessors()));
+            try {
+                pool.invoke(new LevelTask(""));
+            } catch (RuntimeException e) {
+                errors.increment();
+            } finally {
+                pool.shutdown();
+                endNanos = System.nanoTime();
+                done = true;
+                onDone.run();
+            }
+        }, "dir-compare");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    void cancel() {
+        cancelled = true;
+    }
+
+    boolean isDone() {
+        return done;
+    }
+
+    boolean isCancelled() {
+        return cancelled;
+    }
+
+    long count(Status s) {
+        return counts[s.ordinal()].sum();
+    }
+
+    long compared() {
+        return compared.sum();
+    }
+
+    long hashed() {
+        return hashed.sum();
+    }
+
+    long bytesRead() {
+        return bytesRead.sum();
+    }
+
+    long errorCount() {
+        return errors.sum();
+    }
+
+    double elapsedSeconds() {
+        long end = done ? endNanos : System.nanoTime();
+        return Math.max(1e-9, (end - startNanos) / 1e9);
+    }
+
+    Path left() {
+        return left;
+    }
+
+    Path right() {
+        return right;
+    }
+
+    private void emit(Entry e) {
+        if (cancelled)
+            return;
+        counts[e.status.ordinal()].increment();
+        sink.accept(e);
+    }
+
+    // name -> attributes of one folder, sorted by name; empty when the folder is missing / unreadable
+    private TreeMap<String, BasicFileAttributes> list(Path dir) {
+        TreeMap<String, BasicFileAttributes> out = new TreeMap<>();
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir)) {
+            for (Path p : ds) {
+                try {
+                    out.put(p.getFileName().toString(),
+                            Files.readAttributes(p, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS));
+                } catch (IOException e) {
+                    errors.increment();
+                }
+            }
+        } catch (IOException | DirectoryIteratorException e) {
+            errors.increment();
+        }
+        return out;
+    }
+
+    // One relative folder on both sides: lists them concurrently, classifies what it can from the
+    // listings and forks subfolders and content checks
+    private final class LevelTask extends RecursiveAction {
+        private final String rel;
+
+        LevelTask(String rel) {
+            this.rel = rel;
+        }
+
+        @Override
+        protected void compute() {
+            if (cancelled)
+                return;
+            ForkJoinTask<TreeMap<String, BasicFileAttributes>> rightList =
+                    ForkJoinTask.adapt(() -> list(resolve(right, rel))).fork();
+            TreeMap<String, BasicFileAttributes> l = list(resolve(left, rel));
+            TreeMap<String, BasicFileAttributes> r = rightList.join();
+
+            List<ForkJoinTask<?>> subs = new ArrayList<>();
+            for (Map.Entry<String, BasicFileAttributes> e : l.entrySet()) {
+                if (cancelled)
+                    break;
+                String name = e.getKey();
+                String childRel = rel.isEmpty() ? name : rel + "/" + name;
+                BasicFileAttributes a = e.getValue();
+                BasicFileAttributes b = r.remove(name);
+                if (b == null) {
+                    emit(new Entry(childRel, Status.ONLY_LEFT, a.isDirectory(), size(a), -1, mtime(a), -1, null));
+                } else if (a.isDirectory() && b.isDirectory()) {
+                    subs.add(new LevelTask(childRel).fork());
+                } else if (a.isDirectory() != b.isDirectory()) {
+                    emit(new Entry(childRel, Status.DIFFERENT, false, size(a), size(b), mtime(a), mtime(b),
+                            a.isDirectory() ? "folder vs file" : "file vs folder"));
+                } else {
+                    compared.increment();
+                    long ms = Math.abs(mtime(a) - mtime(b));
+                    if (a.size() != b.size())
+                        emit(new Entry(childRel, Status.DIFFERENT, false, a.size(), b.size(), mtime(a), mtime(b),
+                                "size"));
+                    else if (ms <= MTIME_SLACK_MS && !verify)
+                        emit(new Entry(childRel, Status.SAME, false, a.size(), b.size(), mtime(a), mtime(b), null));
+                    else
+                        subs.add(new ContentTask(childRel, a, b).fork());
+                }
+            }
+            for (Map.Entry<String, BasicFileAttributes> e : r.entrySet()) {
+                if (cancelled)
+                    break;
+                String name = e.getKey();
+                BasicFileAttributes b = e.getValue();
+                emit(new Entry(rel.isEmpty() ? name : rel + "/" + name, Status.ONLY_RIGHT, b.isDirectory(), -1,
+                        size(b), -1, mtime(b), null));
+            }
+            for (ForkJoinTask<?> t : subs)
+                t.join();
+        }
+    }
+
+    // Same size, mtimes disagree (or verify mode): edges first, full hashes only if those match
+    private final class ContentTask extends RecursiveAction {
+        private final String rel;
+        private final BasicFileAttributes a;
+        private final BasicFileAttributes b;
+
+        ContentTask(String rel, BasicFileAttributes a, BasicFileAttributes b) {
+            this.rel = rel;
+            this.a = a;
+            this.b = b;
+        }
+
+        @Override
+        protected void compute() {
+            if (cancelled)
+                return;
+            Path lp = resolve(left, rel), rp = resolve(right, rel);
+            String why;
+            try {
+                if (!Arrays.equals(edges(lp), edges(rp))) {
+                    why = "content";
+                } else if (a.size() <= 2L * EDGE) {
+                    why = null; // the edges were the whole file
+                } else {
+                    ForkJoinTask<String> rightHash = new HashTask(rp).fork();
+                    String lh = hash(lp);
+                    String rh;
+                    try {
+                        rh = rightHash.join();
+                    } catch (UncheckedIOException e) {
+                        throw e.getCause();
+                    }
+                    why = lh.equals(rh) ? null : "content";
+                }
+            } catch (IOException e) {
+                errors.increment();
+                why = "unreadable: " + e.getMessage();
+            }
+            emit(new Entry(rel, why == null ? Status.SAME : Status.DIFFERENT, false, a.size(), b.size(), mtime(a),
+                    mtime(b), why));
+        }
+    }
+
+    private final class HashTask extends RecursiveTask<String> {
+        private final Path p;
+
+        HashTask(Path p) {
+            this.p = p;
+        }
+
+        @Override
+        protected String compute() {
+            try {
+                return hash(p);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e); // reported (and counted) by the ContentTask that joins it
+            }
+        }
+    }
+
+    private String hash(Path p) throws IOException {
+        String h = Checksums.hash(p, Checksums.Algo.SHA256);
+        hashed.increment();
+        bytesRead.add(Files.size(p));
+        return h;
+    }
+
+    // The first and last 64 KB (the whole file when it is small)
+    private byte[] edges(Path p) throws IOException {
+        try (FileChannel ch = FileChannel.open(p, StandardOpenOption.READ)) {
+            long size = ch.size();
+            int head = (int) Math.min(EDGE, size);
+            int tail = (int) Math.min(EDGE, size - head);
+            ByteBuffer buf = ByteBuffer.allocate(head + tail);
+            buf.limit(head);
+            while (buf.hasRemaining() && ch.read(buf, buf.position()) > 0) {
+            }
+            buf.limit(head + tail);
+            long from = size - tail;
+            while (buf.hasRemaining() && ch.read(buf, from + buf.position() - head) > 0) {
+            }
+            bytesRead.add(buf.position());
+            return buf.array();
+        }
+    }
+
+    private static Path resolve(Path root, String rel) {
+        return rel.isEmpty() ? root : root.resolve(rel);
+    }
+
+    private static long size(BasicFileAttributes a) {
+        return a.isDirectory() ? 0 : a.size();
+    }
+
+    private static long mtime(BasicFileAttributes a) {
+        return a.lastModifiedTime().toMillis();
+    }
+}
@@ -0,0 +1,285 @@
+// DirListings.java — shared directory listings for the explorer list and the folder tree
+// - Listings are CompactListings (columnar, explorer order, each entry stat'ed once while listing)
+// - Local listings are cached by path and revalidated with one stat of the folder (its mtime)
+// - Watch events drop the changed folder's listing, so a watched folder is never served stale
+// - Listings made within 2 s of the folder's mtime are not cached (coarse FAT / exFAT clocks)
+// - The cache is bounded by count and by the listings' byte footprint
+// - listAsync runs on a small background pool and de-duplicates concurrent requests
+// - Archive / remote folders are delegated to Vfs, which has its own cache
+// - prefetch() loads a folder speculatively (hover / selection); hits and wasted prefetches
+//   (dropped before anyone opened them) are counted
+
+package main;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+final class DirListings {
+
+    private static final int MAX_DIRS = 256;
+    private static final long MAX_BYTES = 64L << 20;
+    private static final long RACY_MS = 2000;
+    private static final int PROBE_LIMIT = 256;
+
+    // prefetched: loaded speculatively and not opened yet
+    private record Entry(CompactListing listing, FileTime mtime, long usedAt, boolean prefetched) {}
+
+    private final Map<Path, Entry> cache = new ConcurrentHashMap<>();
+    private final Map<Path, CompletableFuture<CompactListing>> inflight = new ConcurrentHashMap<>();
+    private final AtomicLong cachedBytes = new AtomicLong();
+    private final ExecutorService io = Executors.newFixedThreadPool(4, r -> {
+        Thread t = new Thread(r, "dir-list");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder prefetches = new LongAdder();
+    private final LongAdder prefetchHits = new LongAdder();
+    private final LongAdder prefetchWasted = new LongAdder();
+
+    DirListings() {
+        DirectoryWatcher.shared().addListener((p, kind) -> {
+            if (kind == StandardWatchEventKinds.OVERFLOW)
+                drop(p);
+            else if (p.getParent() != null)
+                drop(p.getParent());
+        });
+    }
+
+    // Blocking; null when the folder cannot be read (same contract as File.listFiles)
+    CompactListing listNow(File dir) {
+        if (dir instanceof Vfs.VfsFile v) {
+            try {
+                return CompactListing.of(dir, Vfs.listNow(v));
+            } catch (IOException e) {
+                return null;
+            }
+        }
+        // a prefetch already under way is nearly done: wait for it rather than listing twice
+        CompletableFuture<CompactListing> pending = inflight.get(dir.toPath());
+        if (pending != null) {
+            try {
+                pending.join();
+            } catch (CompletionException ignored) {
+            }
+        }
+        return listLocal(dir);
+    }
+
+    private CompactListing listLocal(File dir) {
+        CompactListing hit = cached(dir);
+        if (hit != null) {
+            hits.increment();
+            return hit;
+        }
+        misses.increment();
+        return load(dir, false);
+    }
+
+    CompletableFuture<CompactListing> listAsync(File dir) {
+        if (dir instanceof Vfs.VfsFile v)
+            return Vfs.listAsync(v).thenApply(files -> CompactListing.of(dir, files));
+        return loadAsync(dir, false);
+    }
+
+    // Speculative load for a folder the user is likely to open next; a no-op when it is cached or
+    // already loading. Runs on the listing pool and never blocks the caller.
+    void prefetch(File dir) {
+        if (dir instanceof Vfs.VfsFile v) {
+            if (!Vfs.isCached(v))
+                Vfs.listAsync(v);
+            return;
+        }
+        Path key = dir.toPath();
+        if (cache.containsKey(key) || inflight.containsKey(key))
+            return;
+        prefetches.increment();
+        loadAsync(dir, true);
+    }
+
+    private CompletableFuture<CompactListing> loadAsync(File dir, boolean speculative) {
+        Path key = dir.toPath();
+        CompletableFuture<CompactListing> f = inflight.computeIfAbsent(key,
+                k -> CompletableFuture.supplyAsync(() -> {
+                    CompactListing l = speculative ? load(dir, true) : listLocal(dir);
+                    if (l == null)
+                        throw new CompletionException(new IOException("cannot read " + dir));
+                    return l;
+                }, io));
+        f.whenComplete((r, e) -> inflight.remove(key, f));
+        return f;
+    }
+
+    long hits() {
+        return hits.sum();
+    }
+
+    long misses() {
+        return misses.sum();
+    }
+
+    long prefetches() {
+        return prefetches.sum();
+    }
+
+    long prefetchHits() {
+        return prefetchHits.sum();
+    }
+
+    // prefetched listings that were evicted, invalidated or never cacheable before being opened
+    long prefetchWasted() {
+        return prefetchWasted.sum();
+    }
+
+    long cachedBytes() {
+        return cachedBytes.get();
+    }
+
+    // Subfolders only, sorted by name; stays off the FX thread
+    CompletableFuture<List<File>> subfoldersAsync(File dir) {
+        return listAsync(dir).thenApplyAsync(l -> {
+            int n = l.folderCount(); // explorer order: all folders come first
+            List<File> dirs = new ArrayList<>(n);
+            for (int i = 0; i < n; i++)
+                dirs.add(l.file(i));
+            return dirs;
+        }, io);
+    }
+
+    // One background batch for a whole level of the tree; result[i] answers dirs.get(i)
+    CompletableFuture<boolean[]> hasSubdirsAsync(List<File> dirs) {
+        return CompletableFuture.supplyAsync(() -> {
+            boolean[] has = new boolean[dirs.size()];
+            for (int i = 0; i < has.length; i++)
+                has[i] = hasSubdirs(dirs.get(i));
+            return has;
+        }, io);
+    }
+
+    // Cheap "has subfolders?" for tree expanders. Never lists a whole folder: on ext4/xfs the link
+    // count answers it (2 + one per subfolder), otherwise the first PROBE_LIMIT entries are checked.
+    boolean hasSubdirs(File dir) {
+        if (dir instanceof Vfs.VfsFile v) {
+            if (!Vfs.isCached(v))
+                return true; // don't hit the network for an expander; expanding will tell
+            CompactListing l = listNow(dir);
+            return l != null && l.folderCount() > 0;
+        }
+        Entry e = cache.get(dir.toPath());
+        if (e != null)
+            return e.listing.folderCount() > 0;
+        Path p = dir.toPath();
+        try {
+            Object n = Files.getAttribute(p, "unix:nlink", LinkOption.NOFOLLOW_LINKS);
+            if (n instanceof Integer links && links >= 2) // btrfs and friends always report 1
+                return links > 2;
+        } catch (IOException | UnsupportedOperationException | IllegalArgumentException ignored) {
+        }
+        int seen = 0;
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(p)) {
+            for (Path c : ds) {
+                if (Files.isDirectory(c))
+                    return true;
+                if (++seen >= PROBE_LIMIT)
+                    return true; // too big to probe cheaply; expanding will tell
+            }
+        } catch (IOException | DirectoryIteratorException | SecurityException ignored) {
+        }
+        return false;
+    }
+
+    void invalidate(File dir) {
+        if (dir instanceof Vfs.VfsFile v)
+            Vfs.invalidate(v);
+        else
+            drop(dir.toPath());
+    }
+
+    private void drop(Path key) {
+        Entry e = cache.remove(key);
+        if (e == null)
+            return;
+        cachedBytes.addAndGet(-e.listing.footprintBytes());
+        if (e.prefetched)
+            prefetchWasted.increment();
+    }
+
+    private CompactListing cached(File dir) {
+        Path key = dir.toPath();
+        Entry e = cache.get(key);
+        if (e == null)
+            return null;
+        try {
+            if (!Files.getLastModifiedTime(key).equals(e.mtime)) {
+                drop(key);
+                return null;
+            }
+        } catch (IOException ex) {
+            drop(key);
+            return null;
+        }
+        if (e.prefetched)
+            prefetchHits.increment();
+        cache.replace(key, e, new Entry(e.listing, e.mtime, System.nanoTime(), false));
+        return e.listing; // immutable, so it is shared as is
+    }
+
+    private CompactListing load(File dir, boolean speculative) {
+        Path key = dir.toPath();
+        FileTime before;
+        try {
+            before = Files.getLastModifiedTime(key);
+        } catch (IOException e) {
+            before = null;
+        }
+        CompactListing l = CompactListing.read(dir);
+        if (l == null || before == null)
+            return l;
+        if (System.currentTimeMillis() - before.toMillis() > RACY_MS) {
+            Entry old = cache.put(key, new Entry(l, before, System.nanoTime(), speculative));
+            cachedBytes.addAndGet(l.footprintBytes() - (old == null ? 0 : old.listing.footprintBytes()));
+            while (cache.size() > MAX_DIRS || cachedBytes.get() > MAX_BYTES) {
+                if (!evictOldest(key))
+                    break;
+            }
+        } else if (speculative) {
+            prefetchWasted.increment(); // still changing: nothing usable was kept
+        }
+        return l;
+    }
+
+    // Least recently used entry other than keep; false when there is nothing else to evict
+    private boolean evictOldest(Path keep) {
+        Path oldest = null;
+        long at = Long.MAX_VALUE;
+        for (Map.Entry<Path, Entry> e : cache.entrySet()) {
+            if (!e.getKey().equals(keep) && e.getValue().usedAt < at) {
+                at = e.getValue().usedAt;
+                oldest = e.getKey();
+            }
+        }
+        if (oldest == null)
+            return false;
+        drop(oldest);
+        return true;
+    }
+}
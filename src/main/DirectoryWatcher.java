@@ -0,0 +1,160 @@
+// DirectoryWatcher.java — one shared WatchService, fanned out to the explorer caches
+// - Directories are registered one by one (capped so we stay under inotify limits)
+// - On Windows a whole tree can be watched with a single FILE_TREE registration
+// - Listeners are called on the watcher thread; hop to the FX thread yourself if needed
+
+package main;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+final class DirectoryWatcher {
+
+    @FunctionalInterface
+    interface Listener {
+        // kind is ENTRY_CREATE / ENTRY_DELETE / ENTRY_MODIFY, or OVERFLOW with path = the watched dir
+        void onChange(Path path, WatchEvent.Kind<?> kind);
+    }
+
+    private static final int MAX_KEYS = 8000;
+    private static final boolean IS_WIN =
+            System.getProperty("os.name", "").toLowerCase(Locale.ROOT).contains("win");
+
+    // com.sun.nio.file.ExtendedWatchEventModifier.FILE_TREE, looked up by name so the build doesn't
+    // depend on the internal class; null where the JDK doesn't ship it
+    private static final WatchEvent.Modifier FILE_TREE = IS_WIN ? fileTreeModifier() : null;
+
+    private static DirectoryWatcher shared;
+
+    private final WatchService service;
+    private final Map<Path, WatchKey> keys = new ConcurrentHashMap<>();
+    private final Set<Path> trees = ConcurrentHashMap.newKeySet();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    static synchronized DirectoryWatcher shared() {
+        if (shared == null)
+            shared = new DirectoryWatcher();
+        return shared;
+    }
+
+    private DirectoryWatcher() {
+        WatchService ws = null;
+        try {
+            ws = FileSystems.getDefault().newWatchService();
+        } catch (IOException | UnsupportedOperationException ignored) {
+        }
+        service = ws;
+        if (service != null) {
+            Thread t = new Thread(this::pump, "dir-watcher");
+            t.setDaemon(true);
+            t.start();
+        }
+    }
+
+    // Listeners (the explorer caches and the index) stay registered for the life of the process
+    void addListener(Listener l) {
+        listeners.add(l);
+    }
+
+    // Watch a single directory (non-recursive). Returns false once the key budget is spent.
+    boolean watch(Path dir) {
+        if (service == null || isWatched(dir))
+            return service != null;
+        if (dir.getFileSystem() != FileSystems.getDefault())
+            return false; // inside an archive: nothing to watch
+        if (keys.size() >= MAX_KEYS)
+            return false;
+        try {
+            keys.computeIfAbsent(dir, d -> {
+                try {
+                    return d.register(service, StandardWatchEventKinds.ENTRY_CREATE,
+                            StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            return true;
+        } catch (IllegalStateException | UnsupportedOperationException e) {
+            return false;
+        }
+    }
+
+    // Watch a whole tree with one registration where the platform supports it (Windows only)
+    boolean watchTree(Path root) {
+        if (service == null || FILE_TREE == null)
+            return false;
+        if (trees.contains(root))
+            return true;
+        try {
+            WatchEvent.Kind<?>[] kinds = { StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY };
+            keys.put(root, root.register(service, kinds, FILE_TREE));
+            trees.add(root);
+            return true;
+        } catch (IOException | UnsupportedOperationException e) {
+            return false;
+        }
+    }
+
+    private static WatchEvent.Modifier fileTreeModifier() {
+        try {
+            Class<?> c = Class.forName("com.sun.nio.file.ExtendedWatchEventModifier");
+            return (WatchEvent.Modifier) c.getField("FILE_TREE").get(null);
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            return null;
+        }
+    }
+
+    boolean isWatched(Path dir) {
+        if (keys.containsKey(dir))
+            return true;
+        for (Path t : trees)
+            if (dir.startsWith(t))
+                return true;
+        return false;
+    }
+
+    private void pump() {
+        while (true) {
+            WatchKey key;
+            try {
+                key = service.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            Path dir = (Path) key.watchable();
+            for (WatchEvent<?> ev : key.pollEvents()) {
+                if (ev.kind() == StandardWatchEventKinds.OVERFLOW)
+                    fire(dir, ev.kind());
+                else
+                    fire(dir.resolve((Path) ev.context()), ev.kind());
+            }
+            if (!key.reset()) {
+                keys.remove(dir);
+                trees.remove(dir);
+            }
+        }
+    }
+
+    private void fire(Path p, WatchEvent.Kind<?> kind) {
+        for (Listener l : listeners) {
+            try {
+                l.onChange(p, kind);
+            } catch (RuntimeException ex) {
+                ex.printStackTrace();
+            }
+        }
+    }
+}
@@ -0,0 +1,333 @@
+// DiskUsage.java — volume scanner behind the holo drive's storage analyzer
+// - The tree is walked by fork/join tasks, one per directory, without crossing into other mounts
+// - Only directories and files >= BIG_FILE get their own node; smaller files are summed per directory
+// - Each directory keeps its own per-extension totals so a partial rescan can replace them exactly
+// - rescan() re-lists only directories whose mtime changed and reuses every other subtree as-is
+//   (a file growing in place does not touch its directory's mtime; a full scan picks that up)
+
+package main;
+
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+
+final class DiskUsage {
+
+    static final long BIG_FILE = 1L << 20;
+
+    static final class Node {
+        final String name;
+        final Node parent;
+        final boolean dir;
+        long size;          // total bytes (whole subtree for directories)
+        long files;         // files in the subtree
+        // directories only
+        long mtime;
+        Node[] children = new Node[0];     // sub-directories and big files, largest first
+        long smallBytes;                   // direct files below BIG_FILE
+        int smallCount;
+        String[] extNames = new String[0]; // direct files, per extension
+        long[] extBytes = new long[0];
+        int[] extCounts = new int[0];
+
+        Node(String name, Node parent, boolean dir) {
+            this.name = name;
+            this.parent = parent;
+            this.dir = dir;
+        }
+
+        Path path(Path root) {
+            if (parent == null)
+                return root;
+            return parent.path(root).resolve(name);
+        }
+    }
+
+    record ExtStat(String ext, long bytes, long count) {}
+
+    private final Path root;
+    private final Object rootDev;
+    private volatile Node tree;
+
+    private final LongAdder dirsScanned = new LongAdder();
+    private final LongAdder dirsReused = new LongAdder();
+    private final LongAdder filesSeen = new LongAdder();
+    private final LongAdder bytesSeen = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+
+    private volatile boolean cancelled;
+    private volatile boolean running;
+    private volatile long startNanos;
+    private volatile long endNanos;
+
+    DiskUsage(Path root) {
+        this.root = root;
+        this.rootDev = device(root);
+    }
+
+    Path root() {
+        return root;
+    }
+
+    Node tree() {
+        return tree;
+    }
+
+    boolean isRunning() {
+        return running;
+    }
+
+    void cancel() {
+        cancelled = true;
+    }
+
+    long dirsScanned() {
+        return dirsScanned.sum();
+    }
+
+    long dirsReused() {
+        return dirsReused.sum();
+    }
+
+    long filesSeen() {
+        return filesSeen.sum();
+    }
+
+    long bytesSeen() {
+        return bytesSeen.sum();
+    }
+
+    long errorCount() {
+        return errors.sum();
+    }
+
+    double elapsedSeconds() {
+        long end = running ? System.nanoTime() : endNanos;
+        return Math.max(1e-9, (end - startNanos) / 1e9);
+    }
+
+    // Full scan when there is no tree yet, otherwise an mtime-driven incremental rescan
+    void start(Runnable onDone) {
+        if (running)
+            return;
+        Node previous = tree;
+        cancelled = false;
+        running = true;
+        dirsScanned.reset();
+        dirsReused.reset();
+        filesSeen.reset();
+        bytesSeen.reset();
+        errors.reset();
+        startNanos = System.nanoTime();
+        Thread t = new Thread(() -> {
+            ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+            try {
+                Node fresh = new Node(root.toString(), null, true);
+                pool.invoke(new DirTask(fresh, root, previous));
+                if (!cancelled)
+                    tree = fresh;
+            } finally {
+                pool.shutdown();
+                endNanos = System.nanoTime();
+                running = false;
+                onDone.run();
+            }
+        }, "disk-usage");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    // Drop the cached tree so the next start() walks everything again
+    void forget() {
+        if (!running)
+            tree = null;
+    }
+
+    // Per-extension totals for a subtree, largest first
+    static List<ExtStat> extensions(Node top) {
+        Map<String, long[]> acc = new HashMap<>();
+        collect(top, acc);
+        List<ExtStat> out = new ArrayList<>(acc.size());
+        acc.forEach((k, v) -> out.add(new ExtStat(k, v[0], v[1])));
+        out.sort(Comparator.comparingLong(ExtStat::bytes).reversed());
+        return out;
+    }
+
+    private static void collect(Node n, Map<String, long[]> acc) {
+        if (!n.dir)
+            return;
+        for (int i = 0; i < n.extNames.length; i++) {
+            long[] a = acc.computeIfAbsent(n.extNames[i], k -> new long[2]);
+            a[0] += n.extBytes[i];
+            a[1] += n.extCounts[i];
+        }
+        for (Node c : n.children)
+            collect(c, acc);
+    }
+
+    static String extensionOf(String name) {
+        int dot = name.lastIndexOf('.');
+        if (dot <= 0 || dot == name.length() - 1 || name.length() - dot > 12)
+            return "(none)";
+        return name.substring(dot + 1).toLowerCase(Locale.ROOT);
+    }
+
+    private static Object device(Path p) {
+        try {
+            return Files.getAttribute(p, "unix:dev", LinkOption.NOFOLLOW_LINKS);
+        } catch (IOException | UnsupportedOperationException | IllegalArgumentException e) {
+            return null; // not a unix file system: drives don't nest mounts the same way
+        }
+    }
+
+    private final class DirTask extends RecursiveAction {
+        private final Node node;
+        private final Path dir;
+        private final Node old; // same directory from the previous scan, or null
+
+        DirTask(Node node, Path dir, Node old) {
+            this.node = node;
+            this.dir = dir;
+            this.old = old;
+        }
+
+        @Override
+        protected void compute() {
+            if (cancelled)
+                return;
+            long mtime;
+            try {
+                mtime = Files.getLastModifiedTime(dir, LinkOption.NOFOLLOW_LINKS).toMillis();
+            } catch (IOException e) {
+                errors.increment();
+                return;
+            }
+            node.mtime = mtime;
+
+            List<DirTask> subs = new ArrayList<>();
+            List<Node> kids = new ArrayList<>();
+            if (old != null && old.mtime == mtime) {
+                // listing unchanged: keep direct files, still descend since deeper levels may differ
+                dirsReused.increment();
+                node.smallBytes = old.smallBytes;
+                node.smallCount = old.smallCount;
+                node.extNames = old.extNames;
+                node.extBytes = old.extBytes;
+                node.extCounts = old.extCounts;
+                for (Node c : old.children) {
+                    if (c.dir) {
+                        Node child = new Node(c.name, node, true);
+                        kids.add(child);
+                        subs.add(new DirTask(child, dir.resolve(c.name), c));
+                    } else {
+                        Node f = new Node(c.name, node, false);
+                        f.size = c.size;
+                        f.files = 1;
+                        kids.add(f);
+                    }
+                }
+                long own = 0;
+                for (long b : node.extBytes)
+                    own += b;
+                filesSeen.add(ownFiles(node));
+                bytesSeen.add(own);
+            } else {
+                dirsScanned.increment();
+                list(kids, subs);
+            }
+            invokeAll(subs);
+
+            long size = 0, files = 0;
+            for (long b : node.extBytes)
+                size += b;
+            files = ownFiles(node);
+            for (Node c : kids) {
+                if (c.dir) {
+                    size += c.size;
+                    files += c.files;
+                }
+            }
+            node.size = size;
+            node.files = files;
+            kids.sort(Comparator.comparingLong((Node c) -> c.size).reversed());
+            node.children = kids.toArray(new Node[0]);
+        }
+
+        private void list(List<Node> kids, List<DirTask> subs) {
+            Map<String, Node> previous = new HashMap<>();
+            if (old != null)
+                for (Node c : old.children)
+                    if (c.dir)
+                        previous.put(c.name, c);
+
+            Map<String, long[]> ext = new HashMap<>();
+            try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir)) {
+                for (Path p : ds) {
+                    if (cancelled)
+                        return;
+                    BasicFileAttributes a;
+                    try {
+                        a = Files.readAttributes(p, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    } catch (IOException e) {
+                        errors.increment();
+                        continue;
+                    }
+                    String name = p.getFileName().toString();
+                    if (a.isDirectory()) {
+                        if (rootDev != null && !rootDev.equals(device(p)))
+                            continue; // another mount (/proc, network shares, ...)
+                        Node child = new Node(name, node, true);
+                        kids.add(child);
+                        subs.add(new DirTask(child, p, previous.get(name)));
+                    } else if (a.isRegularFile()) {
+                        long sz = a.size();
+                        long[] e = ext.computeIfAbsent(extensionOf(name), k -> new long[2]);
+                        e[0] += sz;
+                        e[1]++;
+                        filesSeen.increment();
+                        bytesSeen.add(sz);
+                        if (sz >= BIG_FILE) {
+                            Node f = new Node(name, node, false);
+                            f.size = sz;
+                            f.files = 1;
+                            kids.add(f);
+                        } else {
+                            node.smallBytes += sz;
+                            node.smallCount++;
+                        }
+                    }
+                }
+            } catch (IOException | DirectoryIteratorException e) {
+                errors.increment();
+            }
+            int n = ext.size(), i = 0;
+            node.extNames = new String[n];
+            node.extBytes = new long[n];
+            node.extCounts = new int[n];
+            for (Map.Entry<String, long[]> e : ext.entrySet()) {
+                node.extNames[i] = e.getKey().intern();
+                node.extBytes[i] = e.getValue()[0];
+                node.extCounts[i] = (int) e.getValue()[1];
+                i++;
+            }
+        }
+    }
+
+    private static long ownFiles(Node n) {
+        return Arrays.stream(n.extCounts).asLongStream().sum();
+    }
+}
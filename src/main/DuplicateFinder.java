@@ -0,0 +1,307 @@
+// DuplicateFinder.java — finds identical files under a folder for the explorer
+// - Stage 1: parallel walk, files bucketed by exact size (hard links to one inode count once)
+// - Stage 2: only same-size files get a partial hash (first + last 64 KB; small files are hashed whole)
+// - Stage 3: only files whose partial hashes still collide get a full SHA-256
+// - All stages share one fork/join pool; confirmed groups are pushed to a sink as they are found
+
+package main;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+final class DuplicateFinder {
+
+    record Group(long size, List<Path> files) {
+        long reclaimable() {
+            return size * (files.size() - 1);
+        }
+    }
+
+    private static final int EDGE = 64 * 1024;
+
+    private final Path root;
+    private final long minSize;
+    private final Consumer<Group> sink;
+
+    private final LongAdder filesSeen = new LongAdder();
+    private final LongAdder bytesHashed = new LongAdder();
+    private final LongAdder groups = new LongAdder();
+    private final LongAdder reclaimable = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private volatile long sizeCandidates;
+    private volatile long partialCandidates;
+    private volatile String stage = "QUEUED";
+    private volatile boolean cancelled;
+    private volatile boolean done;
+    private volatile long startNanos;
+    private volatile long endNanos;
+
+    DuplicateFinder(Path root, long minSize, Consumer<Group> sink) {
+        this.root = root;
+        this.minSize = Math.max(1, minSize);
+        this.sink = sink;
+    }
+
+    void start(Runnable onDone) {
+        startNanos = System.nanoTime();
+        Thread t = new Thread(() -> {
+            ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+            try {
+                run(pool);
+            } catch (InterruptedException | ExecutionException e) {
+                errors.increment();
+            } finally {
+                pool.shutdown();
+                endNanos = System.nanoTime();
+                stage = cancelled ? "CANCELLED" : "COMPLETE";
+                done = true;
+                onDone.run();
+            }
+        }, "duplicate-finder");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    void cancel() {
+        cancelled = true;
+    }
+
+    boolean isDone() {
+        return done;
+    }
+
+    String stage() {
+        return stage;
+    }
+
+    long filesSeen() {
+        return filesSeen.sum();
+    }
+
+    long sizeCandidates() {
+        return sizeCandidates;
+    }
+
+    long partialCandidates() {
+        return partialCandidates;
+    }
+
+    long bytesHashed() {
+        return bytesHashed.sum();
+    }
+
+    long groupCount() {
+        return groups.sum();
+    }
+
+    long reclaimableBytes() {
+        return reclaimable.sum();
+    }
+
+    long errorCount() {
+        return errors.sum();
+    }
+
+    double elapsedSeconds() {
+        long end = done ? endNanos : System.nanoTime();
+        return Math.max(1e-9, (end - startNanos) / 1e9);
+    }
+
+    private void run(ForkJoinPool pool) throws InterruptedException, ExecutionException {
+        // ---- stage 1: sizes ----
+        stage = "SCANNING";
+        ConcurrentHashMap<Long, ConcurrentLinkedQueue<Path>> bySize = new ConcurrentHashMap<>();
+        Set<Object> seenKeys = ConcurrentHashMap.newKeySet();
+        pool.invoke(new WalkTask(root, bySize, seenKeys));
+        if (cancelled)
+            return;
+        List<List<Path>> buckets = new ArrayList<>();
+        long n = 0;
+        for (ConcurrentLinkedQueue<Path> q : bySize.values()) {
+            if (q.size() > 1) {
+                buckets.add(new ArrayList<>(q));
+                n += q.size();
+            }
+        }
+        bySize.clear();
+        sizeCandidates = n;
+
+        // ---- stage 2: first + last 64 KB ----
+        stage = "PARTIAL HASH";
+        List<List<Path>> narrowed = pool.submit(() -> buckets.parallelStream()
+                .flatMap(b -> splitBy(b, this::partialKey).stream())
+                .toList()).get();
+        if (cancelled)
+            return;
+        long m = 0;
+        List<List<Path>> needFull = new ArrayList<>();
+        for (List<Path> b : narrowed) {
+            long size = sizeOf(b.get(0));
+            if (size <= 2L * EDGE)
+                emit(size, b); // the partial read already covered the whole file with SHA-256
+            else {
+                needFull.add(b);
+                m += b.size();
+            }
+        }
+        partialCandidates = m;
+
+        // ---- stage 3: full hash ----
+        stage = "FULL HASH";
+        pool.submit(() -> needFull.parallelStream().forEach(b -> {
+            for (List<Path> same : splitBy(b, this::fullKey))
+                emit(sizeOf(same.get(0)), same);
+        })).get();
+    }
+
+    private void emit(long size, List<Path> files) {
+        if (cancelled)
+            return;
+        Group g = new Group(size, List.copyOf(files));
+        groups.increment();
+        reclaimable.add(g.reclaimable());
+        sink.accept(g);
+    }
+
+    // Groups paths by key; keeps only groups of two or more. A null key (unreadable) drops the file.
+    private List<List<Path>> splitBy(List<Path> bucket, java.util.function.Function<Path, String> key) {
+        Map<String, List<Path>> m = new HashMap<>();
+        for (Path p : bucket) {
+            if (cancelled)
+                return List.of();
+            String k = key.apply(p);
+            if (k != null)
+                m.computeIfAbsent(k, x -> new ArrayList<>()).add(p);
+        }
+        List<List<Path>> out = new ArrayList<>();
+        for (List<Path> l : m.values())
+            if (l.size() > 1)
+                out.add(l);
+        return out;
+    }
+
+    private String partialKey(Path p) {
+        try (FileChannel ch = FileChannel.open(p, StandardOpenOption.READ)) {
+            long size = ch.size();
+            if (size <= 2L * EDGE) {
+                ByteBuffer all = ByteBuffer.allocate((int) size);
+                while (all.hasRemaining() && ch.read(all) > 0) {
+                }
+                all.flip();
+                bytesHashed.add(all.remaining());
+                Checksums.Hasher h = new Checksums.Hasher(Checksums.Algo.SHA256);
+                h.update(all);
+                return h.hex();
+            }
+            ByteBuffer buf = ByteBuffer.allocate(EDGE);
+            CRC32C head = new CRC32C(), tail = new CRC32C();
+            readFully(ch, buf, 0);
+            head.update(buf);
+            buf.clear();
+            readFully(ch, buf, size - EDGE);
+            tail.update(buf);
+            bytesHashed.add(2L * EDGE);
+            return Long.toHexString(head.getValue()) + ":" + Long.toHexString(tail.getValue());
+        } catch (IOException e) {
+            errors.increment();
+            return null;
+        }
+    }
+
+    private String fullKey(Path p) {
+        try {
+            String h = Checksums.hash(p, Checksums.Algo.SHA256);
+            bytesHashed.add(Files.size(p));
+            return h;
+        } catch (IOException e) {
+            errors.increment();
+            return null;
+        }
+    }
+
+    private static void readFully(FileChannel ch, ByteBuffer buf, long pos) throws IOException {
+        while (buf.hasRemaining()) {
+            int r = ch.read(buf, pos + buf.position());
+            if (r < 0)
+                break;
+        }
+        buf.flip();
+    }
+
+    private static long sizeOf(Path p) {
+        try {
+            return Files.size(p);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private final class WalkTask extends RecursiveAction {
+        private final Path dir;
+        private final ConcurrentHashMap<Long, ConcurrentLinkedQueue<Path>> bySize;
+        private final Set<Object> seenKeys;
+
+        WalkTask(Path dir, ConcurrentHashMap<Long, ConcurrentLinkedQueue<Path>> bySize, Set<Object> seenKeys) {
+            this.dir = dir;
+            this.bySize = bySize;
+            this.seenKeys = seenKeys;
+        }
+
+        @Override
+        protected void compute() {
+            if (cancelled)
+                return;
+            List<WalkTask> subs = new ArrayList<>();
+            try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir)) {
+                for (Path p : ds) {
+                    if (cancelled)
+                        break;
+                    BasicFileAttributes a;
+                    try {
+                        a = Files.readAttributes(p, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    } catch (IOException e) {
+                        errors.increment();
+                        continue;
+                    }
+                    if (a.isDirectory()) {
+                        WalkTask t = new WalkTask(p, bySize, seenKeys);
+                        t.fork();
+                        subs.add(t);
+                    } else if (a.isRegularFile() && a.size() >= minSize) {
+                        filesSeen.increment();
+                        // a second hard link to the same inode frees nothing when deleted
+                        Object key = a.fileKey();
+                        if (key != null && !seenKeys.add(key))
+                            continue;
+                        bySize.computeIfAbsent(a.size(), s -> new ConcurrentLinkedQueue<>()).add(p);
+                    }
+                }
+            } catch (IOException | DirectoryIteratorException e) {
+                errors.increment();
+            }
+            for (WalkTask t : subs)
+                t.join();
+        }
+    }
+}
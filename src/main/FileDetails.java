@@ -0,0 +1,129 @@
+// FileDetails.java — the properties pane's extended details, loaded only when asked for
+// - Link target (and whether it is broken), POSIX permissions / owner / group or the plain owner,
+//   DOS attributes on Windows, hard links and inode where the platform exposes them
+// - User extended attributes (Linux user.*, macOS xattrs, NTFS alternate data streams): names and
+//   sizes, with short printable values inline
+// - Every view is optional: whatever the file system doesn't support is simply left out
+// - Blocking; callers run it off the FX thread
+
+package main;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.DosFileAttributes;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserDefinedFileAttributeView;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+final class FileDetails {
+
+    private static final int MAX_XATTRS = 32;
+    private static final int INLINE_VALUE = 64;
+
+    private FileDetails() {
+    }
+
+    // Label -> value, in display order
+    static Map<String, String> extended(Path p) {
+        Map<String, String> out = new LinkedHashMap<>();
+        Set<String> views = p.getFileSystem().supportedFileAttributeViews();
+        if (Files.isSymbolicLink(p)) {
+            try {
+                out.put("Link target:", Files.readSymbolicLink(p) + (Files.exists(p) ? "" : "  (broken)"));
+            } catch (IOException | UnsupportedOperationException e) {
+                out.put("Link target:", "unreadable");
+            }
+        }
+        if (views.contains("posix")) {
+            try {
+                PosixFileAttributes a = Files.readAttributes(p, PosixFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                out.put("Permissions:", PosixFilePermissions.toString(a.permissions()) + "  (" + octal(a.permissions()) + ")");
+                out.put("Owner:", a.owner().getName());
+                out.put("Group:", a.group().getName());
+            } catch (IOException | UnsupportedOperationException e) {
+                out.put("Permissions:", "unavailable");
+            }
+        } else if (views.contains("owner")) {
+            try {
+                out.put("Owner:", Files.getOwner(p, LinkOption.NOFOLLOW_LINKS).getName());
+            } catch (IOException | UnsupportedOperationException e) {
+                out.put("Owner:", "unavailable");
+            }
+        }
+        if (views.contains("dos") && !views.contains("posix")) { // Linux emulates it with an xattr
+            try {
+                DosFileAttributes d = Files.readAttributes(p, DosFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                String flags = (d.isReadOnly() ? "read-only " : "") + (d.isHidden() ? "hidden " : "")
+                        + (d.isSystem() ? "system " : "") + (d.isArchive() ? "archive" : "");
+                out.put("Attributes:", flags.isBlank() ? "none" : flags.trim());
+            } catch (IOException | UnsupportedOperationException e) {
+                // not every volume answers DOS attributes
+            }
+        }
+        if (views.contains("unix")) {
+            try {
+                Map<String, Object> u = Files.readAttributes(p, "unix:nlink,ino", LinkOption.NOFOLLOW_LINKS);
+                out.put("Hard links:", String.valueOf(u.get("nlink")));
+                out.put("Inode:", String.valueOf(u.get("ino")));
+            } catch (IOException | UnsupportedOperationException | IllegalArgumentException e) {
+                // not every JDK exposes the unix view
+            }
+        }
+        if (views.contains("user"))
+            xattrs(p, out);
+        return out;
+    }
+
+    private static void xattrs(Path p, Map<String, String> out) {
+        UserDefinedFileAttributeView v = Files.getFileAttributeView(p, UserDefinedFileAttributeView.class);
+        if (v == null)
+            return;
+        List<String> names;
+        try {
+            names = v.list();
+        } catch (IOException | UnsupportedOperationException | SecurityException e) {
+            return; // e.g. a file system mounted without user_xattr
+        }
+        if (names.isEmpty()) {
+            out.put("Extended attrs:", "none");
+            return;
+        }
+        int shown = 0;
+        for (String name : names) {
+            if (shown++ == MAX_XATTRS) {
+                out.put("Extended attrs:", "+" + (names.size() - MAX_XATTRS) + " more");
+                break;
+            }
+            try {
+                int size = v.size(name);
+                String value = size + " bytes";
+                if (size <= INLINE_VALUE) {
+                    ByteBuffer b = ByteBuffer.allocate(size);
+                    v.read(name, b);
+                    String s = new String(b.array(), 0, b.position(), StandardCharsets.UTF_8);
+                    if (s.chars().allMatch(c -> c >= 0x20 && c != 0xFFFD))
+                        value = s;
+                }
+                out.put("xattr " + name + ":", value);
+            } catch (IOException | UnsupportedOperationException e) {
+                out.put("xattr " + name + ":", "unreadable");
+            }
+        }
+    }
+
+    private static String octal(Set<PosixFilePermission> perms) {
+        int bits = 0;
+        for (PosixFilePermission perm : perms)
+            bits |= 1 << (8 - perm.ordinal()); // OWNER_READ ... OTHERS_EXECUTE, high bit first
+        return String.format("%03o", bits);
+    }
+}
@@ -0,0 +1,708 @@
+// FileNameIndex.java — compact filename index behind the explorer search field
+// - Entries are (parent id, UTF-8 name) packed into flat arrays; full paths are rebuilt on demand
+// - Lowercase name trigrams map to sorted id lists, so a query only verifies a few candidates
+// - Persisted to ~/.lcars_index.bin and reloaded in one read at startup
+// - A background crawler reconciles the roots; watch events keep it current afterwards
+
+package main;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+final class FileNameIndex {
+
+    private static final int MAGIC = 0x4C434958; // "LCIX"
+    private static final int VERSION = 1;
+    private static final long SAVE_INTERVAL_MS = 120_000;
+
+    private final File store;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Object saveLock = new Object();
+
+    // entry columns (id = position)
+    private int count;
+    private int[] parent = new int[1024];
+    private int[] nameOff = new int[1025];
+    private byte[] names = new byte[16 * 1024];
+    private BitSet deleted = new BitSet();
+    private BitSet dirs = new BitSet();
+
+    // (parent, name) -> id + 1, open addressing; 0 = empty
+    private int[] slots = new int[2048];
+
+    // lowercase UTF-8 trigram -> ascending ids
+    private final Map<Integer, IntList> postings = new HashMap<>();
+
+    // search hits {id, score}: lower score first, then lower id
+    private static final Comparator<int[]> HIT_ORDER =
+            Comparator.<int[]>comparingInt(h -> h[1]).thenComparingInt(h -> h[0]);
+
+    private List<Path> roots = List.of();
+    private volatile boolean dirty;
+    private volatile boolean crawling;
+    private volatile Thread worker;
+    private final LinkedBlockingQueue<Path> recrawls = new LinkedBlockingQueue<>();
+    private boolean listening;
+
+    FileNameIndex(File store) {
+        this.store = store;
+    }
+
+    // ===== Lifecycle =====
+    synchronized void start(List<Path> wantedRoots) {
+        if (worker != null)
+            return;
+        Thread t = new Thread(() -> run(wantedRoots), "index-crawler");
+        t.setDaemon(true);
+        t.setPriority(Thread.MIN_PRIORITY);
+        worker = t;
+        t.start();
+    }
+
+    void rebuild(List<Path> wantedRoots) {
+        Thread old;
+        synchronized (this) { // not held while joining: the crawler locks this to register its listener
+            old = worker;
+            worker = null;
+        }
+        if (old != null) {
+            old.interrupt();
+            // let the old crawl finish its current step, or it would keep adding to the cleared index
+            try {
+                old.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        lock.writeLock().lock();
+        try {
+            clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        store.delete();
+        start(wantedRoots);
+    }
+
+    void close() {
+        Thread t = worker;
+        if (t != null)
+            t.interrupt();
+        save();
+    }
+
+    boolean isCrawling() {
+        return crawling;
+    }
+
+    int size() {
+        lock.readLock().lock();
+        try {
+            return count - deleted.cardinality();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void run(List<Path> wantedRoots) {
+        crawling = true;
+        try {
+            load();
+            lock.writeLock().lock();
+            try {
+                if (!roots.equals(wantedRoots))
+                    clear();
+                roots = List.copyOf(wantedRoots);
+            } finally {
+                lock.writeLock().unlock();
+            }
+            DirectoryWatcher watcher = DirectoryWatcher.shared();
+            synchronized (this) {
+                if (!listening)
+                    watcher.addListener(this::onChange);
+                listening = true;
+            }
+            for (Path root : wantedRoots) {
+                if (Thread.currentThread().isInterrupted())
+                    return;
+                watcher.watchTree(root);
+                crawl(root);
+            }
+            save();
+        } finally {
+            crawling = false;
+        }
+
+        // re-crawls asked for by watch events, and write-behind for watch-driven updates
+        long nextSave = System.currentTimeMillis() + SAVE_INTERVAL_MS;
+        while (!Thread.currentThread().isInterrupted()) {
+            Path p;
+            try {
+                p = recrawls.poll(Math.max(1, nextSave - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (p != null) {
+                recrawls.removeIf(q -> q.startsWith(p)); // covered by this walk
+                crawl(p);
+            }
+            if (System.currentTimeMillis() >= nextSave) {
+                if (dirty)
+                    save();
+                nextSave = System.currentTimeMillis() + SAVE_INTERVAL_MS;
+            }
+        }
+    }
+
+    private void clear() {
+        count = 0;
+        parent = new int[1024];
+        nameOff = new int[1025];
+        names = new byte[16 * 1024];
+        deleted = new BitSet();
+        dirs = new BitSet();
+        slots = new int[2048];
+        postings.clear();
+        roots = List.of();
+        dirty = true;
+    }
+
+    // ===== Crawling =====
+
+    // Walks a subtree, adding what is there and tombstoning what has disappeared since last time.
+    // Entries added while it walks (watch events) are newer than the walk and are left alone.
+    private void crawl(Path top) {
+        BitSet seen = new BitSet();
+        int topId = ensurePath(top, true);
+        if (topId < 0)
+            return;
+        int before;
+        lock.readLock().lock();
+        try {
+            before = count;
+        } finally {
+            lock.readLock().unlock();
+        }
+        Deque<Integer> stack = new ArrayDeque<>();
+        DirectoryWatcher watcher = DirectoryWatcher.shared();
+        try {
+            Files.walkFileTree(top, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    if (Thread.currentThread().isInterrupted())
+                        return FileVisitResult.TERMINATE;
+                    if (name(dir).startsWith(".lcars_trash"))
+                        return FileVisitResult.SKIP_SUBTREE; // trashed items should not show up in search
+                    int id = stack.isEmpty() ? topId : add(stack.peek(), name(dir), true);
+                    seen.set(id);
+                    stack.push(id);
+                    watcher.watch(dir);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    seen.set(add(stack.peek(), name(file), attrs.isDirectory()));
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(Path dir, IOException exc) {
+                    stack.pop();
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException ignored) {
+        }
+        if (Thread.currentThread().isInterrupted())
+            return;
+
+        lock.writeLock().lock();
+        try {
+            // a parent is always added before its children (parent[id] < id), so one ascending pass
+            // finds the whole subtree
+            BitSet under = new BitSet();
+            under.set(topId);
+            for (int id = topId + 1; id < before; id++) {
+                if (parent[id] < 0 || !under.get(parent[id]))
+                    continue;
+                under.set(id);
+                if (!seen.get(id) && !deleted.get(id)) {
+                    deleted.set(id);
+                    dirty = true;
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void onChange(Path p, WatchEvent.Kind<?> kind) {
+        // walking a subtree here would hold up the shared watcher thread: the crawler does it
+        if (kind == StandardWatchEventKinds.OVERFLOW) {
+            recrawls.add(p);
+        } else if (kind == StandardWatchEventKinds.ENTRY_CREATE) {
+            if (Files.isDirectory(p)) {
+                ensurePath(p, true);
+                recrawls.add(p);
+            } else {
+                ensurePath(p, false);
+            }
+        } else if (kind == StandardWatchEventKinds.ENTRY_DELETE) {
+            lock.writeLock().lock();
+            try {
+                int id = idOf(p);
+                if (id >= 0) {
+                    // children stay in the arrays but are hidden by the dead ancestor
+                    deleted.set(id);
+                    dirty = true;
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    private static String name(Path p) {
+        Path n = p.getFileName();
+        return n == null ? p.toString() : n.toString();
+    }
+
+    // ===== Entry storage =====
+    private int ensurePath(Path p, boolean dir) {
+        lock.writeLock().lock();
+        try {
+            for (Path root : roots) {
+                if (!p.startsWith(root))
+                    continue;
+                int id = add(-1, root.toString(), true);
+                Path rel = root.relativize(p);
+                int n = rel.toString().isEmpty() ? 0 : rel.getNameCount();
+                for (int i = 0; i < n; i++)
+                    id = add(id, rel.getName(i).toString(), i < n - 1 || dir);
+                return id;
+            }
+            return -1;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private int idOf(Path p) {
+        for (Path root : roots) {
+            if (!p.startsWith(root))
+                continue;
+            int id = find(-1, root.toString().getBytes(StandardCharsets.UTF_8));
+            Path rel = root.relativize(p);
+            int n = rel.toString().isEmpty() ? 0 : rel.getNameCount();
+            for (int i = 0; i < n && id >= 0; i++)
+                id = find(id, rel.getName(i).toString().getBytes(StandardCharsets.UTF_8));
+            return id;
+        }
+        return -1;
+    }
+
+    private int add(int parentId, String name, boolean dir) {
+        byte[] nb = name.getBytes(StandardCharsets.UTF_8);
+        lock.writeLock().lock();
+        try {
+            int existing = find(parentId, nb);
+            if (existing >= 0 && !deleted.get(existing)) {
+                dirs.set(existing, dir);
+                return existing;
+            }
+            int id = count++;
+            if (id >= parent.length) {
+                parent = Arrays.copyOf(parent, parent.length * 2);
+                nameOff = Arrays.copyOf(nameOff, parent.length + 1);
+            }
+            int off = nameOff[id];
+            if (off + nb.length > names.length)
+                names = Arrays.copyOf(names, Math.max(names.length * 2, off + nb.length));
+            System.arraycopy(nb, 0, names, off, nb.length);
+            nameOff[id + 1] = off + nb.length;
+            parent[id] = parentId;
+            dirs.set(id, dir);
+            putSlot(id);
+            for (int key : trigrams(name))
+                postings.computeIfAbsent(key, k -> new IntList()).add(id);
+            dirty = true;
+            return id;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static int slotHash(int parentId, byte[] b, int off, int len) {
+        int h = parentId * 0x9E3779B1;
+        for (int i = off; i < off + len; i++)
+            h = h * 31 + b[i];
+        return h ^ (h >>> 16);
+    }
+
+    private int find(int parentId, byte[] nb) {
+        int mask = slots.length - 1;
+        for (int i = slotHash(parentId, nb, 0, nb.length) & mask;; i = (i + 1) & mask) {
+            int s = slots[i];
+            if (s == 0)
+                return -1;
+            int id = s - 1;
+            if (parent[id] == parentId && Arrays.equals(names, nameOff[id], nameOff[id + 1], nb, 0, nb.length))
+                return id;
+        }
+    }
+
+    private void putSlot(int id) {
+        if ((count + 1) * 2 > slots.length) {
+            slots = new int[slots.length * 2];
+            for (int i = 0; i < count; i++)
+                if (i != id)
+                    putSlot(i);
+        }
+        int mask = slots.length - 1;
+        int len = nameOff[id + 1] - nameOff[id];
+        for (int i = slotHash(parent[id], names, nameOff[id], len) & mask;; i = (i + 1) & mask) {
+            int s = slots[i];
+            if (s == 0 || (parent[s - 1] == parent[id]
+                    && Arrays.equals(names, nameOff[s - 1], nameOff[s], names, nameOff[id], nameOff[id + 1]))) {
+                // a re-created name replaces its dead predecessor
+                slots[i] = id + 1;
+                return;
+            }
+        }
+    }
+
+    private static int[] trigrams(String name) {
+        byte[] b = name.toLowerCase(Locale.ROOT).getBytes(StandardCharsets.UTF_8);
+        if (b.length < 3)
+            return new int[0];
+        int[] out = new int[b.length - 2];
+        for (int i = 0; i < out.length; i++)
+            out[i] = ((b[i] & 0xFF) << 16) | ((b[i + 1] & 0xFF) << 8) | (b[i + 2] & 0xFF);
+        Arrays.sort(out);
+        int n = 0;
+        for (int i = 0; i < out.length; i++)
+            if (i == 0 || out[i] != out[i - 1])
+                out[n++] = out[i];
+        return Arrays.copyOf(out, n);
+    }
+
+    // ===== Search =====
+    List<Path> search(String query, int limit) {
+        String q = query.trim().toLowerCase(Locale.ROOT);
+        if (q.isEmpty())
+            return List.of();
+        byte[] qb = q.getBytes(StandardCharsets.UTF_8);
+        boolean ascii = q.chars().allMatch(c -> c < 0x80);
+
+        lock.readLock().lock();
+        try {
+            // every candidate is scored; only the best `limit` are kept ({id, score}, worst on top)
+            PriorityQueue<int[]> best = new PriorityQueue<>(Math.max(1, limit + 1), HIT_ORDER.reversed());
+            int[] keys = trigrams(q);
+            if (keys.length > 0) {
+                IntList[] lists = new IntList[keys.length];
+                for (int i = 0; i < keys.length; i++) {
+                    lists[i] = postings.get(keys[i]);
+                    if (lists[i] == null)
+                        return List.of();
+                }
+                Arrays.sort(lists, Comparator.comparingInt(l -> l.size));
+                int[] cand = Arrays.copyOf(lists[0].data, lists[0].size);
+                int n = cand.length;
+                for (int i = 1; i < lists.length && n > 0; i++)
+                    n = intersect(cand, n, lists[i]);
+                for (int i = 0; i < n; i++)
+                    collect(cand[i], q, qb, ascii, best, limit);
+            } else {
+                for (int id = 0; id < count; id++)
+                    collect(id, q, qb, ascii, best, limit);
+            }
+
+            Path[] out = new Path[best.size()];
+            for (int i = out.length - 1; i >= 0; i--)
+                out[i] = pathOf(best.poll()[0]);
+            return Arrays.asList(out);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // in-place intersection of cand[0..n) with an ascending list; returns the new length
+    private static int intersect(int[] cand, int n, IntList other) {
+        int[] o = other.data;
+        int j = 0, w = 0;
+        for (int i = 0; i < n && j < other.size; i++) {
+            int v = cand[i];
+            while (j < other.size && o[j] < v)
+                j++;
+            if (j < other.size && o[j] == v)
+                cand[w++] = v;
+        }
+        return w;
+    }
+
+    private void collect(int id, String q, byte[] qb, boolean ascii, PriorityQueue<int[]> best, int limit) {
+        if (limit <= 0 || deleted.get(id) || parent[id] < 0)
+            return;
+        int off = nameOff[id];
+        int len = nameOff[id + 1] - off;
+        // ids arrive in ascending order, so a name that can't beat the worst kept hit even as a
+        // match is skipped before any byte comparison; one that could only win as a prefix
+        // is compared on its first bytes alone
+        boolean prefixOnly = false;
+        if (best.size() == limit) {
+            int worst = best.peek()[1];
+            if ((len == qb.length ? 0 : (1 << 24) | Math.min(len, 0xFFFFFF)) >= worst)
+                return;
+            prefixOnly = ((2 << 24) | Math.min(len, 0xFFFFFF)) >= worst;
+        }
+        int at;
+        if (ascii) {
+            at = indexOfIgnoreAsciiCase(names, off, prefixOnly ? Math.min(len, qb.length) : len, qb);
+        } else {
+            at = new String(names, off, len, StandardCharsets.UTF_8).toLowerCase(Locale.ROOT).indexOf(q);
+        }
+        if (at < 0)
+            return;
+        // exact name, then prefix, then substring; shorter names first within a class
+        int cls = (at == 0 && len == qb.length) ? 0 : at == 0 ? 1 : 2;
+        int[] hit = { id, (cls << 24) | Math.min(len, 0xFFFFFF) };
+        if (best.size() == limit && HIT_ORDER.compare(hit, best.peek()) >= 0)
+            return;
+        if (underDeleted(id)) // an ancestor folder is gone: pathOf can't name it
+            return;
+        best.add(hit);
+        if (best.size() > limit)
+            best.poll();
+    }
+
+    private boolean underDeleted(int id) {
+        for (int p = parent[id]; p >= 0 && parent[p] >= 0; p = parent[p])
+            if (deleted.get(p))
+                return true;
+        return false;
+    }
+
+    private static int indexOfIgnoreAsciiCase(byte[] hay, int off, int len, byte[] needle) {
+        outer:
+        for (int i = 0; i <= len - needle.length; i++) {
+            for (int j = 0; j < needle.length; j++) {
+                int c = hay[off + i + j];
+                if (c >= 'A' && c <= 'Z')
+                    c += 32;
+                if (c != needle[j])
+                    continue outer;
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    // Rebuilds the absolute path; null when the entry or an ancestor has been deleted
+    private Path pathOf(int id) {
+        Deque<String> parts = new ArrayDeque<>();
+        int p = id;
+        for (; parent[p] >= 0; p = parent[p]) {
+            if (deleted.get(p))
+                return null;
+            parts.push(new String(names, nameOff[p], nameOff[p + 1] - nameOff[p], StandardCharsets.UTF_8));
+        }
+        Path out = Paths.get(new String(names, nameOff[p], nameOff[p + 1] - nameOff[p], StandardCharsets.UTF_8));
+        for (String s : parts)
+            out = out.resolve(s);
+        return out;
+    }
+
+    // ===== Persistence =====
+    void save() {
+        synchronized (saveLock) { // the crawler and close() must not share the .tmp file
+            if (dirty)
+                write();
+        }
+    }
+
+    private void write() {
+        File tmp = new File(store.getPath() + ".tmp");
+        lock.readLock().lock();
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tmp), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(roots.size());
+            for (Path r : roots) {
+                byte[] b = r.toString().getBytes(StandardCharsets.UTF_8);
+                out.writeShort(b.length);
+                out.write(b);
+            }
+            out.writeInt(count);
+            out.writeInt(nameOff[count]);
+            out.write(names, 0, nameOff[count]);
+            for (int i = 0; i <= count; i++)
+                out.writeInt(nameOff[i]);
+            for (int i = 0; i < count; i++)
+                out.writeInt(parent[i]);
+            writeBits(out, deleted);
+            writeBits(out, dirs);
+            out.writeInt(postings.size());
+            for (Map.Entry<Integer, IntList> e : postings.entrySet()) {
+                out.writeInt(e.getKey());
+                out.writeInt(e.getValue().size);
+                for (int i = 0; i < e.getValue().size; i++)
+                    out.writeInt(e.getValue().data[i]);
+            }
+            // changes need the write lock, so nothing after this point is lost by clearing here
+            dirty = false;
+        } catch (IOException ex) {
+            ex.printStackTrace();
+            tmp.delete();
+            dirty = true;
+            return;
+        } finally {
+            lock.readLock().unlock();
+        }
+        try {
+            Files.move(tmp.toPath(), store.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            ex.printStackTrace();
+            tmp.delete();
+            dirty = true; // try again on the next save
+        }
+    }
+
+    private static void writeBits(DataOutputStream out, BitSet bits) throws IOException {
+        long[] words = bits.toLongArray();
+        out.writeInt(words.length);
+        for (long w : words)
+            out.writeLong(w);
+    }
+
+    private void load() {
+        if (!store.isFile())
+            return;
+        try {
+            // read onto the heap: a mapping would pin the file until GC, and on Windows that makes
+            // the replace in save() fail
+            ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(store.toPath()));
+            if (buf.getInt() != MAGIC || buf.getInt() != VERSION)
+                return;
+            List<Path> storedRoots = new ArrayList<>();
+            int rc = buf.getInt();
+            for (int i = 0; i < rc; i++) {
+                byte[] s = new byte[buf.getShort() & 0xFFFF];
+                buf.get(s);
+                storedRoots.add(Paths.get(new String(s, StandardCharsets.UTF_8)));
+            }
+            int n = buf.getInt();
+            int namesLen = buf.getInt();
+            byte[] nm = new byte[Math.max(16, namesLen)];
+            buf.get(nm, 0, namesLen);
+            int[] offs = new int[Math.max(2, n + 1)];
+            readInts(buf, offs, n + 1);
+            int[] par = new int[Math.max(1, n)];
+            readInts(buf, par, n);
+            BitSet del = readBits(buf);
+            BitSet dr = readBits(buf);
+            Map<Integer, IntList> post = new HashMap<>();
+            int pc = buf.getInt();
+            for (int i = 0; i < pc; i++) {
+                int key = buf.getInt();
+                int len = buf.getInt();
+                IntList l = new IntList(len);
+                readInts(buf, l.data, len);
+                l.size = len;
+                post.put(key, l);
+            }
+
+            lock.writeLock().lock();
+            try {
+                count = n;
+                names = nm;
+                nameOff = offs;
+                parent = par;
+                deleted = del;
+                dirs = dr;
+                postings.clear();
+                postings.putAll(post);
+                roots = storedRoots;
+                slots = new int[Integer.highestOneBit(Math.max(1024, n * 2)) * 2];
+                for (int i = 0; i < n; i++)
+                    putSlot(i);
+                dirty = false;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } catch (IOException | RuntimeException ex) {
+            // corrupt or foreign file: fall back to a fresh crawl
+        }
+    }
+
+    private static void readInts(ByteBuffer buf, int[] dst, int n) {
+        IntBuffer ib = buf.asIntBuffer();
+        ib.get(dst, 0, n);
+        buf.position(buf.position() + n * 4);
+    }
+
+    private static BitSet readBits(ByteBuffer buf) {
+        long[] words = new long[buf.getInt()];
+        buf.asLongBuffer().get(words);
+        buf.position(buf.position() + words.length * 8);
+        return BitSet.valueOf(words);
+    }
+
+    // ===== Growable int array for posting lists =====
+    private static final class IntList {
+        int[] data;
+        int size;
+
+        IntList() {
+            this(4);
+        }
+
+        IntList(int capacity) {
+            data = new int[Math.max(1, capacity)];
+        }
+
+        void add(int v) {
+            if (size == data.length)
+                data = Arrays.copyOf(data, size * 2);
+            data[size++] = v;
+        }
+    }
+}
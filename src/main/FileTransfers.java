@@ -0,0 +1,836 @@
+// FileTransfers.java — background copy/move queue for the explorer
+// - Jobs run one after another on a dispatcher thread, so the FX thread never blocks on I/O
+// - Small files are copied in parallel on a worker pool; large files go through FileChannel.transferTo
+// - Moves try an atomic rename first and fall back to copy + delete (only for items that copied cleanly)
+// - Every job has live byte/file counters, pause/resume/cancel and a per-item failure list
+// - A job takes any number of sources, so a multi-selection is one operation with one completion
+// - Optional verify mode hashes the bytes as they are written, then re-reads the copy and compares
+// - ZIP / UNZIP jobs run ParallelZip on the same queue, with the same counters and controls
+// - DOWNLOAD copies out of sources that have no NIO Path (Vfs remote, e.g. WebDAV) through their streams
+
+package main;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+
+final class FileTransfers {
+
+    enum Mode { COPY, MOVE, DELETE, ZIP, UNZIP, DOWNLOAD }
+
+    // What to do when a destination already exists (the top-level name, or a file inside a merged folder)
+    enum Conflict { RENAME, OVERWRITE, SKIP }
+
+    enum State { QUEUED, SCANNING, RUNNING, PAUSED, DONE, CANCELLED }
+
+    // dst is null for DELETE, the archive for ZIP, the folder for UNZIP; src is null for DOWNLOAD
+    record Item(Path src, Path dst) {}
+
+    record Failure(Path path, String error) {}
+
+    private static final long LARGE_FILE = 8L << 20;
+    private static final long CHUNK = 16L << 20;
+    private static final int WORKERS = Math.max(2, Math.min(8, Runtime.getRuntime().availableProcessors()));
+    private static final int MAX_IN_FLIGHT = 256;
+
+    private final ExecutorService dispatcher = Executors.newSingleThreadExecutor(r -> daemon(r, "file-transfers"));
+    private final ExecutorService workers = Executors.newFixedThreadPool(WORKERS, r -> daemon(r, "file-copy"));
+
+    static final class Job {
+        final String title;
+        final Mode mode;
+        final Conflict conflict;
+        final List<Path> sources;
+        final List<Vfs.VfsFile> remote; // DOWNLOAD sources; empty otherwise
+        final Path targetDir;
+        final Checksums.Algo verify; // null = no verification
+        final CompletableFuture<Job> done = new CompletableFuture<>();
+
+        private final List<Item> finished = new ArrayList<>();
+        private final ConcurrentLinkedQueue<Failure> failures = new ConcurrentLinkedQueue<>();
+        private final LongAdder bytesDone = new LongAdder();
+        private final LongAdder filesDone = new LongAdder();
+        private final LongAdder filesVerified = new LongAdder();
+        private volatile long bytesTotal;
+        private volatile long filesTotal;
+        private volatile State state = State.QUEUED;
+        private volatile boolean paused;
+        private volatile boolean cancelled;
+        private long startNanos;
+        private long pausedNanos;
+        private long pausedAt;
+        private long endNanos;
+
+        Job(String title, Mode mode, Conflict conflict, List<Path> sources, List<Vfs.VfsFile> remote, Path targetDir,
+            Checksums.Algo verify) {
+            this.title = title;
+            this.mode = mode;
+            this.conflict = conflict;
+            this.sources = List.copyOf(sources);
+            this.remote = List.copyOf(remote);
+            this.targetDir = targetDir;
+            this.verify = verify;
+        }
+
+        State state() {
+            return state;
+        }
+
+        long bytesDone() {
+            return bytesDone.sum();
+        }
+
+        long bytesTotal() {
+            return bytesTotal;
+        }
+
+        long filesDone() {
+            return filesDone.sum();
+        }
+
+        long filesTotal() {
+            return filesTotal;
+        }
+
+        long filesVerified() {
+            return filesVerified.sum();
+        }
+
+        // top-level items that made it to their destination
+        synchronized List<Item> finished() {
+            return List.copyOf(finished);
+        }
+
+        List<Failure> failures() {
+            return List.copyOf(failures);
+        }
+
+        // bytes per second while actually running (paused time excluded)
+        synchronized double throughput() {
+            if (startNanos == 0)
+                return 0;
+            long now = endNanos != 0 ? endNanos : System.nanoTime();
+            long paused = pausedNanos + (pausedAt != 0 ? now - pausedAt : 0);
+            double secs = (now - startNanos - paused) / 1e9;
+            return secs > 0.25 ? bytesDone.sum() / secs : 0;
+        }
+
+        // seconds left, or -1 when unknown
+        double etaSeconds() {
+            double rate = throughput();
+            long left = bytesTotal - bytesDone.sum();
+            return rate > 0 && left >= 0 ? left / rate : -1;
+        }
+
+        synchronized void pause() {
+            if (state == State.QUEUED || state == State.SCANNING || state == State.RUNNING) {
+                paused = true;
+                pausedAt = System.nanoTime();
+                state = State.PAUSED;
+            }
+        }
+
+        synchronized void resume() {
+            if (paused) {
+                paused = false;
+                if (startNanos != 0)
+                    pausedNanos += System.nanoTime() - pausedAt;
+                pausedAt = 0;
+                state = startNanos == 0 ? State.QUEUED : State.RUNNING;
+                notifyAll();
+            }
+        }
+
+        synchronized void cancel() {
+            cancelled = true;
+            paused = false;
+            notifyAll();
+        }
+
+        boolean isCancelled() {
+            return cancelled;
+        }
+
+        // blocks while paused; returns false once cancelled
+        private boolean proceed() {
+            if (!paused)
+                return !cancelled;
+            synchronized (this) {
+                while (paused && !cancelled) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        cancelled = true;
+                    }
+                }
+            }
+            return !cancelled;
+        }
+
+        private void fail(Path p, Exception e) {
+            String msg = e.getMessage();
+            if (e instanceof FileAlreadyExistsException)
+                msg = "already exists";
+            else if (e instanceof DirectoryNotEmptyException)
+                msg = "folder not empty";
+            else if (e instanceof NoSuchFileException)
+                msg = "not found";
+            else if (e instanceof AccessDeniedException)
+                msg = "access denied";
+            failures.add(new Failure(p, msg != null ? msg : e.getClass().getSimpleName()));
+        }
+
+        private synchronized void setState(State s) {
+            if (s == State.RUNNING && startNanos == 0) {
+                startNanos = System.nanoTime();
+                if (pausedAt != 0)
+                    pausedAt = startNanos;
+            }
+            if ((s == State.DONE || s == State.CANCELLED) && endNanos == 0)
+                endNanos = System.nanoTime();
+            if (!paused || s == State.DONE || s == State.CANCELLED)
+                state = s;
+        }
+    }
+
+    Job delete(String title, List<Path> sources) {
+        return submit(title, Mode.DELETE, Conflict.SKIP, sources, null, null);
+    }
+
+    // Packs all sources into one new archive in targetDir
+    Job zip(String title, List<Path> sources, Path targetDir) {
+        return submit(title, Mode.ZIP, Conflict.RENAME, sources, targetDir, null);
+    }
+
+    // Extracts each archive into a new folder of its own name in targetDir
+    Job unzip(String title, List<Path> archives, Path targetDir) {
+        return submit(title, Mode.UNZIP, Conflict.RENAME, archives, targetDir, null);
+    }
+
+    Job submit(String title, Mode mode, Conflict conflict, List<Path> sources, Path targetDir,
+               Checksums.Algo verify) {
+        Job job = new Job(title, mode, conflict, sources, List.of(), targetDir, verify);
+        dispatcher.execute(() -> run(job));
+        return job;
+    }
+
+    // Copies Vfs entries (files or whole folders) into targetDir through their providers' streams
+    Job download(String title, List<Vfs.VfsFile> sources, Conflict conflict, Path targetDir) {
+        Job job = new Job(title, Mode.DOWNLOAD, conflict, List.of(), sources, targetDir, null);
+        dispatcher.execute(() -> run(job));
+        return job;
+    }
+
+    // ===== Job execution (dispatcher thread) =====
+    private record FileTask(Path src, Path dst, long size, Item owner) {}
+
+    private void run(Job job) {
+        Archives.Hold held = Archives.hold(job.sources); // sources inside a zip stay mounted meanwhile
+        try {
+            if (!job.proceed()) {
+                job.setState(State.CANCELLED);
+                return;
+            }
+            if (job.mode == Mode.DELETE) {
+                deleteAll(job);
+                return;
+            }
+            if (job.mode == Mode.ZIP || job.mode == Mode.UNZIP) {
+                archive(job);
+                return;
+            }
+            if (job.mode == Mode.DOWNLOAD) {
+                download(job);
+                return;
+            }
+            job.setState(State.SCANNING);
+            List<Item> plan = new ArrayList<>();
+            List<Item> renamed = new ArrayList<>();
+            for (Path src : job.sources) {
+                if (job.mode == Mode.MOVE && job.targetDir.equals(src.getParent()))
+                    continue; // cut and pasted back into the same folder
+                Path dst = resolveTarget(job, src);
+                if (dst == null)
+                    continue;
+                // a move within one file system is a rename: nothing to copy
+                if (job.mode == Mode.MOVE && tryRename(src, dst, job.conflict)) {
+                    renamed.add(new Item(src, dst));
+                    continue;
+                }
+                if (Files.isDirectory(src, LinkOption.NOFOLLOW_LINKS) && dst.startsWith(src)) {
+                    job.failures.add(new Failure(src, "cannot copy a folder into itself"));
+                    continue;
+                }
+                plan.add(new Item(src, dst));
+            }
+            synchronized (job) {
+                job.finished.addAll(renamed);
+            }
+
+            List<FileTask> files = new ArrayList<>();
+            Set<Item> broken = ConcurrentHashMap.newKeySet(); // items with a skipped or failed file
+            for (Item it : plan) {
+                if (!job.proceed())
+                    break;
+                scan(job, it, files, broken);
+            }
+            long total = 0;
+            for (FileTask f : files)
+                total += f.size;
+            job.bytesTotal = total;
+            job.filesTotal = files.size();
+
+            job.setState(State.RUNNING);
+            Map<Item, List<Path>> copied = copyAll(job, files, broken);
+
+            for (Item it : plan) {
+                if (job.cancelled)
+                    continue;
+                // a move only deletes what was actually copied; a folder that still holds skipped or
+                // failed files stays where it is
+                if (job.mode == Mode.MOVE)
+                    deleteMoved(job, it, copied.getOrDefault(it, List.of()), !broken.contains(it));
+                if (broken.contains(it))
+                    continue;
+                synchronized (job) {
+                    job.finished.add(it);
+                }
+            }
+            job.setState(job.cancelled ? State.CANCELLED : State.DONE);
+        } catch (RuntimeException ex) {
+            job.fail(job.targetDir, ex);
+            job.setState(State.DONE);
+        } finally {
+            held.close();
+            job.done.complete(job);
+        }
+    }
+
+    private void deleteAll(Job job) {
+        job.filesTotal = job.sources.size();
+        job.setState(State.RUNNING);
+        for (Path src : job.sources) {
+            if (!job.proceed())
+                break;
+            int before = job.failures.size();
+            deleteTree(job, src);
+            if (job.failures.size() == before) {
+                synchronized (job) {
+                    job.finished.add(new Item(src, null));
+                }
+            }
+            job.filesDone.increment();
+        }
+        job.setState(job.cancelled ? State.CANCELLED : State.DONE);
+    }
+
+    private void archive(Job job) {
+        ParallelZip.Progress progress = new ParallelZip.Progress() {
+            @Override
+            public boolean proceed() {
+                return job.proceed();
+            }
+
+            @Override
+            public void addTotals(long bytes, long files) {
+                synchronized (job) {
+                    job.bytesTotal += bytes;
+                    job.filesTotal += files;
+                }
+            }
+
+            @Override
+            public void bytes(long n) {
+                job.bytesDone.add(n);
+            }
+
+            @Override
+            public void file() {
+                job.filesDone.increment();
+            }
+
+            @Override
+            public void fail(Path p, Exception e) {
+                job.fail(p, e);
+            }
+        };
+        job.setState(State.SCANNING);
+        if (job.mode == Mode.ZIP) {
+            Path first = job.sources.get(0);
+            String base = job.sources.size() > 1 ? "Archive"
+                    : Files.isDirectory(first) ? first.getFileName().toString() : stripExtension(first);
+            Path dst = uniquePath(job.targetDir.resolve(base + ".zip"));
+            List<ParallelZip.Source> plan = ParallelZip.plan(job.sources, progress);
+            job.setState(State.RUNNING);
+            try {
+                ParallelZip.zip(plan, dst, progress);
+                if (!job.cancelled)
+                    synchronized (job) {
+                        for (Path src : job.sources)
+                            job.finished.add(new Item(src, dst));
+                    }
+            } catch (IOException | RuntimeException e) {
+                job.fail(dst, e);
+            }
+        } else {
+            job.setState(State.RUNNING);
+            for (Path src : job.sources) {
+                if (!job.proceed())
+                    break;
+                Path dst = uniquePath(job.targetDir.resolve(stripExtension(src)));
+                try {
+                    ParallelZip.unzip(src, dst, progress);
+                    if (!job.cancelled)
+                        synchronized (job) {
+                            job.finished.add(new Item(src, dst));
+                        }
+                } catch (IOException | RuntimeException e) {
+                    job.fail(src, e);
+                }
+            }
+        }
+        job.setState(job.cancelled ? State.CANCELLED : State.DONE);
+    }
+
+    private record Fetch(Vfs.VfsFile src, Path dst) {}
+
+    private void download(Job job) {
+        job.setState(State.SCANNING);
+        List<Fetch> files = new ArrayList<>();
+        List<Item> planned = new ArrayList<>();
+        long total = 0;
+        for (Vfs.VfsFile src : job.remote) {
+            if (!job.proceed())
+                break;
+            Path dst = resolveTarget(job, src.getName(), null);
+            if (dst == null)
+                continue;
+            planned.add(new Item(null, dst));
+            total += plan(job, src, dst, files);
+        }
+        job.bytesTotal = total;
+        job.filesTotal = files.size();
+
+        job.setState(State.RUNNING);
+        int failed = job.failures.size();
+        byte[] buf = new byte[1 << 16];
+        for (Fetch f : files) {
+            if (!job.proceed())
+                break;
+            boolean complete = false;
+            // fetched beside the target first, so an overwritten file is only replaced by a complete one
+            Path part = f.dst.resolveSibling("." + f.dst.getFileName() + ".download");
+            try (InputStream in = f.src.open(); OutputStream out = Files.newOutputStream(part)) {
+                int n;
+                while ((n = in.read(buf)) > 0) {
+                    if (!job.proceed())
+                        break;
+                    out.write(buf, 0, n);
+                    job.bytesDone.add(n);
+                }
+                complete = !job.cancelled;
+            } catch (IOException | RuntimeException e) {
+                job.fail(f.dst, e);
+            }
+            try {
+                if (complete) {
+                    Files.move(part, f.dst, StandardCopyOption.REPLACE_EXISTING);
+                    if (f.src.lastModified() > 0)
+                        Files.setLastModifiedTime(f.dst, FileTime.fromMillis(f.src.lastModified()));
+                }
+            } catch (IOException e) {
+                job.fail(f.dst, e);
+                complete = false;
+            } finally {
+                try {
+                    Files.deleteIfExists(part);
+                } catch (IOException ignored) {
+                }
+            }
+            if (complete)
+                job.filesDone.increment();
+        }
+        if (!job.cancelled && job.failures.size() == failed)
+            synchronized (job) {
+                job.finished.addAll(planned);
+            }
+        job.setState(job.cancelled ? State.CANCELLED : State.DONE);
+    }
+
+    // Creates dst (and its folders) and lists the files to fetch; returns their total size. Files that
+    // already exist inside a merged folder get the job's conflict policy, as scan() does for copies.
+    private long plan(Job job, Vfs.VfsFile src, Path dst, List<Fetch> out) {
+        if (!src.isDirectory()) {
+            if (Files.exists(dst, LinkOption.NOFOLLOW_LINKS)) {
+                if (job.conflict == Conflict.SKIP) {
+                    job.failures.add(new Failure(dst, "skipped: already exists"));
+                    return 0;
+                }
+                if (job.conflict == Conflict.RENAME)
+                    dst = uniquePath(dst);
+            }
+            out.add(new Fetch(src, dst));
+            return src.length();
+        }
+        long total = 0;
+        try {
+            Files.createDirectories(dst);
+            for (File c : Vfs.listNow(src)) {
+                if (!job.proceed())
+                    break;
+                total += plan(job, (Vfs.VfsFile) c, dst.resolve(c.getName()), out);
+            }
+        } catch (IOException e) {
+            job.fail(dst, e);
+        }
+        return total;
+    }
+
+    private static String stripExtension(Path p) {
+        String name = p.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(0, dot) : name;
+    }
+
+    private Path resolveTarget(Job job, Path src) {
+        return resolveTarget(job, src.getFileName().toString(), src);
+    }
+
+    // src may be null when the source has no Path of its own (DOWNLOAD)
+    private Path resolveTarget(Job job, String name, Path src) {
+        Path dst = job.targetDir.resolve(name);
+        if (!Files.exists(dst, LinkOption.NOFOLLOW_LINKS))
+            return dst;
+        if (dst.equals(src) || job.conflict == Conflict.RENAME)
+            return uniquePath(dst);
+        if (job.conflict == Conflict.SKIP && !Files.isDirectory(dst)) {
+            job.failures.add(new Failure(dst, "skipped: " + dst.getFileName() + " already exists"));
+            return null;
+        }
+        return dst; // OVERWRITE, or SKIP merging into an existing folder
+    }
+
+    private static boolean tryRename(Path src, Path dst, Conflict conflict) {
+        try {
+            if (conflict == Conflict.OVERWRITE && !Files.isDirectory(dst))
+                Files.move(src, dst, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            else
+                Files.move(src, dst, StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } catch (AtomicMoveNotSupportedException | FileAlreadyExistsException | DirectoryNotEmptyException e) {
+            return false;
+        } catch (IOException e) {
+            return false; // cross-device and friends: fall back to copy + delete
+        }
+    }
+
+    // Creates the destination folders and lists the files to copy
+    private void scan(Job job, Item item, List<FileTask> out, Set<Item> broken) {
+        try {
+            Files.walkFileTree(item.src, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    if (job.cancelled)
+                        return FileVisitResult.TERMINATE;
+                    try {
+                        Files.createDirectories(item.dst.resolve(item.src.relativize(dir).toString()));
+                        return FileVisitResult.CONTINUE;
+                    } catch (IOException e) {
+                        job.fail(dir, e);
+                        broken.add(item);
+                        return FileVisitResult.SKIP_SUBTREE;
+                    }
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    Path dst = file.equals(item.src) ? item.dst
+                            : item.dst.resolve(item.src.relativize(file).toString());
+                    if (Files.exists(dst, LinkOption.NOFOLLOW_LINKS) && job.conflict == Conflict.SKIP) {
+                        job.failures.add(new Failure(file, "skipped: already exists"));
+                        broken.add(item);
+                        return FileVisitResult.CONTINUE;
+                    }
+                    out.add(new FileTask(file, dst, attrs.size(), item));
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    job.fail(file, e);
+                    broken.add(item);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            job.fail(item.src, e);
+            broken.add(item);
+        }
+    }
+
+    // Large files one at a time on this thread, small files fanned out to the worker pool.
+    // Failed items are added to broken; returns the sources that were copied, by item.
+    private Map<Item, List<Path>> copyAll(Job job, List<FileTask> files, Set<Item> broken) {
+        ConcurrentLinkedQueue<FileTask> copied = new ConcurrentLinkedQueue<>();
+        Semaphore inFlight = new Semaphore(MAX_IN_FLIGHT);
+        List<CompletableFuture<Void>> pending = new ArrayList<>();
+        List<FileTask> large = new ArrayList<>();
+
+        for (FileTask f : files) {
+            if (f.size >= LARGE_FILE) {
+                large.add(f);
+                continue;
+            }
+            if (!job.proceed())
+                break;
+            inFlight.acquireUninterruptibly();
+            pending.add(CompletableFuture.runAsync(() -> {
+                try {
+                    if (job.proceed())
+                        copyOne(job, f, broken, copied);
+                } finally {
+                    inFlight.release();
+                }
+            }, workers));
+        }
+        for (FileTask f : large) {
+            if (!job.proceed())
+                break;
+            copyOne(job, f, broken, copied);
+        }
+        CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[0])).join();
+        Map<Item, List<Path>> byItem = new HashMap<>();
+        for (FileTask f : copied)
+            byItem.computeIfAbsent(f.owner, k -> new ArrayList<>()).add(f.src);
+        return byItem;
+    }
+
+    private void copyOne(Job job, FileTask f, Set<Item> broken, ConcurrentLinkedQueue<FileTask> copied) {
+        try {
+            if (job.verify != null && !Files.isSymbolicLink(f.src))
+                copyVerified(job, f);
+            else if (f.size >= LARGE_FILE)
+                transfer(job, f);
+            else {
+                Files.copy(f.src, f.dst, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES,
+                        LinkOption.NOFOLLOW_LINKS); // symlinks are copied as links
+                job.bytesDone.add(f.size);
+            }
+            job.filesDone.increment();
+            copied.add(f);
+        } catch (IOException | RuntimeException e) {
+            job.fail(f.src, e);
+            broken.add(f.owner);
+        }
+    }
+
+    // Zero-copy where the OS supports it; chunked so pause/cancel take effect mid-file
+    private void transfer(Job job, FileTask f) throws IOException {
+        if (f.src.getFileSystem() != FileSystems.getDefault()) {
+            stream(job, f);
+            return;
+        }
+        boolean complete = false;
+        try (FileChannel in = FileChannel.open(f.src, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(f.dst, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                     StandardOpenOption.TRUNCATE_EXISTING)) {
+            long size = in.size(), pos = 0;
+            while (pos < size) {
+                if (!job.proceed())
+                    return;
+                long n = in.transferTo(pos, Math.min(CHUNK, size - pos), out);
+                if (n <= 0)
+                    break; // file shrank underneath us
+                pos += n;
+                job.bytesDone.add(n);
+            }
+            complete = true;
+        } finally {
+            if (!complete)
+                Files.deleteIfExists(f.dst);
+        }
+        Files.setLastModifiedTime(f.dst, Files.getLastModifiedTime(f.src));
+    }
+
+    // Sources inside an archive have no real FileChannel (no transferTo, no positional reads):
+    // the entry is inflated through its InputStream instead
+    private void stream(Job job, FileTask f) throws IOException {
+        boolean complete = false;
+        byte[] buf = new byte[1 << 16];
+        try (InputStream in = Files.newInputStream(f.src);
+             OutputStream out = Files.newOutputStream(f.dst)) {
+            int n;
+            while ((n = in.read(buf)) > 0) {
+                if (!job.proceed())
+                    return;
+                out.write(buf, 0, n);
+                job.bytesDone.add(n);
+            }
+            complete = true;
+        } finally {
+            if (!complete)
+                Files.deleteIfExists(f.dst);
+        }
+        Files.setLastModifiedTime(f.dst, Files.getLastModifiedTime(f.src));
+    }
+
+    private static final ThreadLocal<ByteBuffer> COPY_BUFFER =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(1 << 20));
+
+    // Streams through one buffer so the hasher sees exactly the bytes written (no zero-copy here),
+    // then flushes and compares against a fresh read of the destination
+    private void copyVerified(Job job, FileTask f) throws IOException {
+        Checksums.Hasher hasher = new Checksums.Hasher(job.verify);
+        ByteBuffer buf = COPY_BUFFER.get();
+        boolean complete = false;
+        try (ReadableByteChannel in = f.src.getFileSystem() == FileSystems.getDefault()
+                ? FileChannel.open(f.src, StandardOpenOption.READ)
+                : Channels.newChannel(Files.newInputStream(f.src));
+             FileChannel out = FileChannel.open(f.dst, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                     StandardOpenOption.TRUNCATE_EXISTING)) {
+            buf.clear();
+            while (in.read(buf) > 0) {
+                if (!job.proceed())
+                    return;
+                buf.flip();
+                hasher.update(buf.duplicate());
+                int n = 0;
+                while (buf.hasRemaining())
+                    n += out.write(buf);
+                job.bytesDone.add(n);
+                buf.clear();
+            }
+            out.force(true);
+            complete = true;
+        } finally {
+            if (!complete)
+                Files.deleteIfExists(f.dst);
+        }
+        Files.setLastModifiedTime(f.dst, Files.getLastModifiedTime(f.src));
+        String expected = hasher.hex();
+        String actual = Checksums.readBack(f.dst, job.verify);
+        if (!expected.equals(actual)) {
+            Files.deleteIfExists(f.dst);
+            throw new IOException(job.verify.label + " mismatch: wrote " + expected + ", read back " + actual);
+        }
+        job.filesVerified.increment();
+    }
+
+    // The MOVE half of copy + delete: removes the copied files, then every folder of the item that
+    // is empty afterwards. When complete is false, leftover folders are expected and not reported.
+    private static void deleteMoved(Job job, Item item, List<Path> copied, boolean complete) {
+        for (Path p : copied) {
+            try {
+                Files.deleteIfExists(p);
+            } catch (IOException e) {
+                job.fail(p, e);
+            }
+        }
+        if (!Files.isDirectory(item.src, LinkOption.NOFOLLOW_LINKS))
+            return;
+        try {
+            Files.walkFileTree(item.src, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(Path dir, IOException e) {
+                    try {
+                        Files.delete(dir);
+                    } catch (DirectoryNotEmptyException ex) {
+                        if (complete)
+                            job.fail(dir, ex); // something appeared in the source meanwhile
+                    } catch (IOException ex) {
+                        job.fail(dir, ex);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            job.fail(item.src, e);
+        }
+    }
+
+    private static void deleteTree(Job job, Path root) {
+        try {
+            Files.walkFileTree(root, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                    Files.delete(file);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+                    if (e != null)
+                        throw e;
+                    Files.delete(dir);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            job.fail(root, e);
+        }
+    }
+
+    // same naming as the explorer's uniqueName: "name - Copy.ext", "name - Copy (2).ext", ...
+    static Path uniquePath(Path p) {
+        if (!Files.exists(p, LinkOption.NOFOLLOW_LINKS))
+            return p;
+        String name = p.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String base = (dot > 0) ? name.substring(0, dot) : name;
+        String ext = (dot > 0) ? name.substring(dot) : "";
+        for (int i = 1; ; i++) {
+            Path c = p.resolveSibling(base + " - Copy" + (i > 1 ? " (" + i + ")" : "") + ext);
+            if (!Files.exists(c, LinkOption.NOFOLLOW_LINKS))
+                return c;
+        }
+    }
+
+    private static Thread daemon(Runnable r, String name) {
+        Thread t = new Thread(r, name);
+        t.setDaemon(true);
+        return t;
+    }
+}
@@ -0,0 +1,197 @@
+// FolderSizes.java — recursive folder sizes for the explorer
+// - Subtrees are summed by a fork/join walker, one task per directory
+// - Every finished subtree total is cached (LRU, bounded), so opening a child after its parent is free
+// - Watch events (and explicit invalidate calls) drop the changed dir, its ancestors and its subtree
+// - Invalidations are numbered; a total whose walk started before a related invalidation is not cached
+// - A Job exposes live byte/file counters so the UI can show progress while walking
+
+package main;
+
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.LongAdder;
+
+final class FolderSizes {
+
+    record Totals(long bytes, long files, long dirs, long unreadable) {}
+
+    static final class Job {
+        final Path dir;
+        final CompletableFuture<Totals> result = new CompletableFuture<>();
+        private final LongAdder bytes = new LongAdder();
+        private final LongAdder files = new LongAdder();
+
+        Job(Path dir) {
+            this.dir = dir;
+        }
+
+        long bytesSoFar() {
+            return bytes.sum();
+        }
+
+        long filesSoFar() {
+            return files.sum();
+        }
+    }
+
+    private static final int MAX_CACHED = 500_000;
+    private static final int RECENT = 256;
+
+    private final ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    // access-ordered; every use holds its monitor
+    private final LinkedHashMap<Path, Totals> cache = new LinkedHashMap<>(1024, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Path, Totals> eldest) {
+            return size() > MAX_CACHED;
+        }
+    };
+    private long generation; // bumped by every invalidation
+    private final Path[] recent = new Path[RECENT]; // recent[gen % RECENT] = the path invalidated at gen
+    private final ConcurrentHashMap<Path, Job> inflight = new ConcurrentHashMap<>();
+
+    FolderSizes() {
+        DirectoryWatcher.shared().addListener((p, kind) -> {
+            if (kind == StandardWatchEventKinds.ENTRY_DELETE || kind == StandardWatchEventKinds.OVERFLOW)
+                invalidate(p);
+            else
+                invalidateAncestors(p);
+        });
+    }
+
+    Totals cached(Path dir) {
+        synchronized (cache) {
+            return cache.get(dir);
+        }
+    }
+
+    // Returns the running job for dir if there is one, so repeated requests share the walk
+    Job request(Path dir) {
+        Totals t = cached(dir);
+        if (t != null) {
+            Job done = new Job(dir);
+            done.bytes.add(t.bytes());
+            done.files.add(t.files());
+            done.result.complete(t);
+            return done;
+        }
+        Job fresh = new Job(dir);
+        Job running = inflight.putIfAbsent(dir, fresh);
+        if (running != null)
+            return running;
+        pool.execute(() -> {
+            try {
+                fresh.result.complete(new SizeTask(dir, fresh).invoke());
+            } catch (RuntimeException ex) {
+                fresh.result.completeExceptionally(ex);
+            } finally {
+                inflight.remove(dir, fresh);
+            }
+        });
+        return fresh;
+    }
+
+    // Something at path changed: its own total, everything under it and every ancestor are stale
+    void invalidate(Path path) {
+        synchronized (cache) {
+            invalidateAncestors(path);
+            cache.keySet().removeIf(k -> k.startsWith(path));
+        }
+    }
+
+    private void invalidateAncestors(Path path) {
+        synchronized (cache) {
+            generation++;
+            recent[(int) (generation % RECENT)] = path;
+            for (Path a = path; a != null; a = a.getParent())
+                cache.remove(a);
+        }
+    }
+
+    // Caches a total unless something in or above dir was invalidated after its walk began (gen)
+    private void store(Path dir, Totals total, long gen) {
+        synchronized (cache) {
+            if (generation - gen >= RECENT)
+                return; // too many changes since to tell which ones: don't trust it
+            for (long g = gen + 1; g <= generation; g++) {
+                Path p = recent[(int) (g % RECENT)];
+                if (p.startsWith(dir) || dir.startsWith(p))
+                    return;
+            }
+            cache.put(dir, total);
+        }
+    }
+
+    private final class SizeTask extends RecursiveTask<Totals> {
+        private final Path dir;
+        private final Job job;
+
+        SizeTask(Path dir, Job job) {
+            this.dir = dir;
+            this.job = job;
+        }
+
+        @Override
+        protected Totals compute() {
+            Totals hit;
+            long gen;
+            synchronized (cache) {
+                hit = cache.get(dir);
+                gen = generation;
+            }
+            if (hit != null) {
+                job.bytes.add(hit.bytes());
+                job.files.add(hit.files());
+                return hit;
+            }
+            long bytes = 0, files = 0, dirs = 0, unreadable = 0;
+            List<SizeTask> subs = new ArrayList<>();
+            try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir)) {
+                for (Path p : ds) {
+                    BasicFileAttributes a;
+                    try {
+                        a = Files.readAttributes(p, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    } catch (IOException e) {
+                        unreadable++;
+                        continue;
+                    }
+                    if (a.isDirectory()) {
+                        SizeTask t = new SizeTask(p, job);
+                        t.fork();
+                        subs.add(t);
+                    } else {
+                        bytes += a.size();
+                        files++;
+                        job.bytes.add(a.size());
+                        job.files.increment();
+                    }
+                }
+            } catch (IOException | DirectoryIteratorException e) {
+                unreadable++;
+            }
+            for (SizeTask t : subs) {
+                Totals s = t.join();
+                bytes += s.bytes();
+                files += s.files();
+                dirs += 1 + s.dirs();
+                unreadable += s.unreadable();
+            }
+            Totals total = new Totals(bytes, files, dirs, unreadable);
+            store(dir, total, gen);
+            return total;
+        }
+    }
+}
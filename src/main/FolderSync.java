@@ -0,0 +1,747 @@
+// FolderSync.java — keeps a folder mirrored onto another one (typically a thumbdrive)
+// - The target holds a manifest of what the last sync left there (relative path, size, mtime, SHA-256),
+//   so a re-sync only stats the source: files whose size + mtime still match are skipped without
+//   touching the drive; everything else is compared against the target itself
+// - New and small changed files are copied whole (through a .part file, then moved into place)
+// - Big changed files get an rsync-style delta: block signatures (rolling weak sum + CRC32C) of the
+//   old copy on the target, a rolling scan of the source for blocks it already has, and only the
+//   literal bytes are transferred. When every reused block is still at its old offset the file is
+//   patched in place (appends / edits write just the changed bytes); otherwise it is rebuilt beside
+//   the old copy. Either way the result is checked against the source's SHA-256, and a mismatch
+//   (a false block match) falls back to a whole-file copy
+// - Optionally removes files that were synced before and have since been deleted from the source
+//   (only if the copy on the target is still the one we wrote)
+// - Runs on its own thread with throughput stats; the manifest is saved as it goes, so a cancelled
+//   sync keeps what it finished
+
+package main;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+final class FolderSync {
+
+    static final String MANIFEST = ".lcars-sync";
+    private static final int MAGIC = 0x4C53594E; // "LSYN"
+    private static final int VERSION = 1;
+    private static final long MTIME_SLACK_MS = 2000; // FAT keeps 2 s
+    private static final long DELTA_MIN = 8L << 20;
+    private static final int IO_BUFFER = 1 << 20;
+    private static final int SAVE_EVERY = 500;
+    private static final String PART = ".lcars-sync.part";
+
+    private record Entry(long size, long mtime, byte[] hash) {}
+
+    private record Pending(String rel, long size, long mtime) {}
+
+    // one delta instruction: reuse target block `block`, or send `len` source bytes from `offset`
+    private record Op(int block, long offset, long len) {
+        boolean literal() {
+            return block < 0;
+        }
+    }
+
+    private final Path source;
+    private final Path target;
+    private final boolean prune;
+    private final boolean checkTarget;
+    private final Consumer<String> log;
+
+    private final LongAdder filesScanned = new LongAdder();
+    private final LongAdder unchanged = new LongAdder();
+    private final LongAdder copied = new LongAdder();
+    private final LongAdder deltas = new LongAdder();
+    private final LongAdder removed = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder bytesDone = new LongAdder();     // source bytes brought up to date
+    private final LongAdder bytesWritten = new LongAdder();  // bytes actually written to the target
+    private final LongAdder bytesReused = new LongAdder();   // bytes a delta found already on the target
+    private volatile long bytesTotal;
+    private volatile String phase = "QUEUED";
+    private volatile boolean cancelled;
+    private volatile boolean done;
+    private volatile long startNanos;
+    private volatile long endNanos;
+
+    private Map<String, Entry> manifest = new HashMap<>();
+
+    FolderSync(Path source, Path target, boolean prune, boolean checkTarget, Consumer<String> log) {
+        this.source = source.toAbsolutePath().normalize();
+        this.target = target.toAbsolutePath().normalize();
+        this.prune = prune;
+        this.checkTarget = checkTarget;
+        this.log = log;
+    }
+
+    void start(Runnable onDone) {
+        startNanos = System.nanoTime();
+        Thread t = new Thread(() -> {
+            try {
+                run();
+            } catch (IOException | RuntimeException e) {
+                errors.increment();
+                log.accept("FAILED: " + e.getMessage());
+            } finally {
+                endNanos = System.nanoTime();
+                phase = cancelled ? "CANCELLED" : "COMPLETE";
+                done = true;
+                onDone.run();
+            }
+        }, "folder-sync");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    void cancel() {
+        cancelled = true;
+    }
+
+    boolean isDone() {
+        return done;
+    }
+
+    String phase() {
+        return phase;
+    }
+
+    long filesScanned() {
+        return filesScanned.sum();
+    }
+
+    long unchanged() {
+        return unchanged.sum();
+    }
+
+    long copied() {
+        return copied.sum();
+    }
+
+    long deltas() {
+        return deltas.sum();
+    }
+
+    long removed() {
+        return removed.sum();
+    }
+
+    long errorCount() {
+        return errors.sum();
+    }
+
+    long bytesDone() {
+        return bytesDone.sum();
+    }
+
+    long bytesTotal() {
+        return bytesTotal;
+    }
+
+    long bytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    long bytesReused() {
+        return bytesReused.sum();
+    }
+
+    double elapsedSeconds() {
+        long end = done ? endNanos : System.nanoTime();
+        return Math.max(1e-9, (end - startNanos) / 1e9);
+    }
+
+    // source bytes per second brought up to date
+    double throughput() {
+        double secs = elapsedSeconds();
+        return secs > 0.25 ? bytesDone.sum() / secs : 0;
+    }
+
+    // ---- the sync ----
+
+    private void run() throws IOException {
+        if (target.startsWith(source) || source.startsWith(target))
+            throw new IOException("source and target must not contain each other");
+        Files.createDirectories(target);
+        phase = "READING MANIFEST";
+        manifest = loadManifest();
+
+        phase = "SCANNING";
+        List<Pending> pending = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        scan(pending, seen);
+        if (cancelled)
+            return;
+        long total = 0;
+        for (Pending p : pending)
+            total += p.size;
+        bytesTotal = total;
+
+        phase = "TRANSFERRING";
+        int sinceSave = 0;
+        for (Pending p : pending) {
+            if (cancelled)
+                break;
+            try {
+                transfer(p);
+            } catch (IOException | RuntimeException e) {
+                errors.increment();
+                log.accept("ERROR  " + p.rel + ": " + e.getMessage());
+            }
+            if (++sinceSave >= SAVE_EVERY) {
+                saveManifest();
+                sinceSave = 0;
+            }
+        }
+
+        if (prune && !cancelled) {
+            phase = "REMOVING";
+            for (String rel : new ArrayList<>(manifest.keySet())) {
+                if (cancelled)
+                    break;
+                if (!seen.contains(rel))
+                    removeStale(rel);
+            }
+        }
+        phase = "SAVING MANIFEST";
+        saveManifest();
+    }
+
+    // Walks the source; files that match the manifest (or the target, when asked to check it) are
+    // settled here, everything else is queued
+    private void scan(List<Pending> pending, Set<String> seen) throws IOException {
+        Files.walkFileTree(source, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                return cancelled ? FileVisitResult.TERMINATE : FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes a) {
+                if (cancelled)
+                    return FileVisitResult.TERMINATE;
+                if (!a.isRegularFile())
+                    return FileVisitResult.CONTINUE; // links and specials aren't mirrored
+                filesScanned.increment();
+                String rel = rel(file);
+                seen.add(rel);
+                long mtime = a.lastModifiedTime().toMillis();
+                Entry m = manifest.get(rel);
+                if (!checkTarget && m != null && m.size == a.size() && near(m.mtime, mtime)) {
+                    unchanged.increment();
+                    return FileVisitResult.CONTINUE;
+                }
+                try {
+                    BasicFileAttributes t = Files.readAttributes(dst(rel), BasicFileAttributes.class,
+                            LinkOption.NOFOLLOW_LINKS);
+                    if (t.isRegularFile() && t.size() == a.size() && near(t.lastModifiedTime().toMillis(), mtime)) {
+                        // already there (an earlier copy, or the manifest was lost)
+                        manifest.put(rel, new Entry(a.size(), mtime,
+                                m != null && m.size == a.size() ? m.hash : null));
+                        unchanged.increment();
+                        return FileVisitResult.CONTINUE;
+                    }
+                } catch (IOException e) {
+                    // not on the target yet
+                }
+                pending.add(new Pending(rel, a.size(), mtime));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                errors.increment();
+                log.accept("ERROR  " + rel(file) + ": " + e.getMessage());
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private void transfer(Pending p) throws IOException {
+        Path src = source.resolve(p.rel);
+        Path dst = dst(p.rel);
+        Files.createDirectories(dst.getParent());
+        BasicFileAttributes t = null;
+        try {
+            t = Files.readAttributes(dst, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (NoSuchFileException e) {
+            // new file
+        }
+        byte[] hash;
+        if (t != null && t.isRegularFile() && p.size >= DELTA_MIN && t.size() > 0) {
+            hash = delta(src, dst, p);
+            deltas.increment();
+        } else {
+            hash = copy(src, dst, p.size);
+            copied.increment();
+            log.accept("COPY   " + p.rel + "  (" + p.size + " bytes)");
+        }
+        Files.setLastModifiedTime(dst, FileTime.fromMillis(p.mtime));
+        manifest.put(p.rel, new Entry(p.size, p.mtime, hash));
+    }
+
+    // Whole-file copy through a .part file; returns the SHA-256 of what was written
+    private byte[] copy(Path src, Path dst, long expected) throws IOException {
+        Path part = dst.resolveSibling(dst.getFileName() + PART);
+        MessageDigest sha = sha256();
+        try (FileChannel in = FileChannel.open(src, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(part, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                     StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buf = ByteBuffer.allocateDirect(IO_BUFFER);
+            while (in.read(buf) > 0) {
+                if (cancelled)
+                    throw new IOException("cancelled");
+                buf.flip();
+                sha.update(buf.duplicate());
+                int n = buf.remaining();
+                while (buf.hasRemaining())
+                    out.write(buf);
+                bytesWritten.add(n);
+                bytesDone.add(Math.min(n, Math.max(0, expected)));
+                buf.clear();
+            }
+            out.force(false);
+        } catch (IOException e) {
+            Files.deleteIfExists(part);
+            throw e;
+        }
+        replace(part, dst);
+        return sha.digest();
+    }
+
+    // ---- rsync-style delta ----
+
+    private byte[] delta(Path src, Path dst, Pending p) throws IOException {
+        int block = blockSize(p.size);
+        Signatures sigs = Signatures.of(dst, block);
+        MessageDigest sha = sha256();
+        List<Op> ops = scanForBlocks(src, sigs, sha, p.size);
+        byte[] hash = sha.digest();
+        if (cancelled)
+            throw new IOException("cancelled");
+
+        long literal = 0;
+        boolean inPlace = true;
+        long out = 0;
+        for (Op op : ops) {
+            if (op.literal())
+                literal += op.len;
+            else if ((long) op.block * block != out)
+                inPlace = false;
+            out += op.literal() ? op.len : sigs.length(op.block);
+        }
+        long reused = p.size - literal;
+        byte[] result = inPlace ? patchInPlace(src, dst, ops, p.size) : rebuild(src, dst, ops, sigs, block);
+        if (!Arrays.equals(result, hash)) {
+            // a weak + CRC collision picked a wrong block: fall back to sending everything
+            log.accept("DELTA  " + p.rel + ": verification failed, copying whole file");
+            return copy(src, dst, p.size);
+        }
+        bytesReused.add(reused);
+        bytesDone.add(p.size);
+        log.accept(String.format("DELTA  %s  (%,d of %,d bytes sent, %s)", p.rel, literal, p.size,
+                inPlace ? "patched in place" : "rebuilt"));
+        return hash;
+    }
+
+    // rsync's block size rule of thumb: about sqrt(size), kept between 16 KB and 1 MB
+    private static int blockSize(long size) {
+        int b = Integer.highestOneBit((int) Math.min(1 << 20, Math.max(16 << 10, (long) Math.sqrt(size))));
+        return Math.max(16 << 10, b);
+    }
+
+    // The source as a list of reused blocks and literal runs. The whole source passes through sha.
+    private List<Op> scanForBlocks(Path src, Signatures sigs, MessageDigest sha, long size) throws IOException {
+        List<Op> ops = new ArrayList<>();
+        int bs = sigs.block;
+        byte[] buf = new byte[Math.max(8 << 20, bs * 4)];
+        CRC32C crc = new CRC32C();
+        try (FileChannel in = FileChannel.open(src, StandardOpenOption.READ)) {
+            long bufStart = 0;   // file offset of buf[0]
+            int bufLen = 0;
+            long pos = 0;        // window start (file offset)
+            long literalStart = 0;
+            long readTo = 0;
+            int a = 0, b = 0;
+            boolean fresh = true;
+            while (pos < size) {
+                if (cancelled)
+                    return ops;
+                int want = (int) Math.min(bs, size - pos);
+                // keep [pos, pos + want] in the buffer (one byte extra for rolling)
+                if (pos + want + 1 > bufStart + bufLen && readTo < size) {
+                    int keep = (int) (bufStart + bufLen - pos);
+                    System.arraycopy(buf, (int) (pos - bufStart), buf, 0, keep);
+                    bufStart = pos;
+                    bufLen = keep;
+                    ByteBuffer bb = ByteBuffer.wrap(buf, bufLen, buf.length - bufLen);
+                    while (bb.hasRemaining() && readTo < size) {
+                        int n = in.read(bb, readTo);
+                        if (n < 0)
+                            break;
+                        sha.update(buf, bufLen, n);
+                        bufLen += n;
+                        readTo += n;
+                    }
+                }
+                int off = (int) (pos - bufStart);
+                if (fresh) {
+                    a = 0;
+                    b = 0;
+                    for (int i = 0; i < want; i++) {
+                        int x = buf[off + i] & 0xFF;
+                        a += x;
+                        b += (want - i) * x;
+                    }
+                    a &= 0xFFFF;
+                    b &= 0xFFFF;
+                    fresh = false;
+                }
+                int hit = -1;
+                int strong = 0;
+                boolean strongDone = false;
+                for (int k = sigs.first(a | (b << 16)); k >= 0; k = sigs.next(k)) {
+                    if (sigs.length(k) != want)
+                        continue;
+                    if (!strongDone) { // only on a weak hit, and once per window
+                        crc.reset();
+                        crc.update(buf, off, want);
+                        strong = (int) crc.getValue();
+                        strongDone = true;
+                    }
+                    if (strong == sigs.strong[k]) {
+                        hit = k;
+                        break;
+                    }
+                }
+                if (hit >= 0) {
+                    if (pos > literalStart)
+                        ops.add(new Op(-1, literalStart, pos - literalStart));
+                    ops.add(new Op(hit, 0, want));
+                    pos += want;
+                    literalStart = pos;
+                    fresh = true;
+                    continue;
+                }
+                if (want < bs || pos + want >= size) {
+                    // the tail window can't roll on; what is left is literal
+                    pos = size;
+                    break;
+                }
+                int out = buf[off] & 0xFF, inb = buf[off + want] & 0xFF;
+                a = (a - out + inb) & 0xFFFF;
+                b = (b - want * out + a) & 0xFFFF;
+                pos++;
+            }
+            if (readTo < size) { // the tail was matched without reading the rest into the digest
+                ByteBuffer bb = ByteBuffer.allocate(IO_BUFFER);
+                while (readTo < size) {
+                    bb.clear();
+                    int n = in.read(bb, readTo);
+                    if (n < 0)
+                        break;
+                    sha.update(bb.array(), 0, n);
+                    readTo += n;
+                }
+            }
+            if (size > literalStart)
+                ops.add(new Op(-1, literalStart, size - literalStart));
+        }
+        return ops;
+    }
+
+    // Every reused block is where it already was: write just the literal runs and trim the end, then
+    // read the result back; returns its SHA-256 (reads are cheap next to writes on a thumbdrive)
+    private byte[] patchInPlace(Path src, Path dst, List<Op> ops, long size) throws IOException {
+        MessageDigest sha = sha256();
+        try (FileChannel in = FileChannel.open(src, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(dst, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            for (Op op : ops) {
+                if (op.literal())
+                    transferRange(in, op.offset, out, op.offset, op.len);
+            }
+            out.truncate(size);
+            out.force(false);
+            ByteBuffer buf = ByteBuffer.allocate(IO_BUFFER);
+            long at = 0;
+            int n;
+            while ((n = out.read(buf.clear(), at)) > 0) {
+                if (cancelled)
+                    throw new IOException("cancelled");
+                sha.update(buf.array(), 0, n);
+                at += n;
+            }
+        }
+        return sha.digest();
+    }
+
+    // Builds the new file beside the old one from its blocks and the literal runs; returns its SHA-256
+    private byte[] rebuild(Path src, Path dst, List<Op> ops, Signatures sigs, int block) throws IOException {
+        Path part = dst.resolveSibling(dst.getFileName() + PART);
+        MessageDigest sha = sha256();
+        try (FileChannel in = FileChannel.open(src, StandardOpenOption.READ);
+             FileChannel old = FileChannel.open(dst, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(part, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                     StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buf = ByteBuffer.allocate(Math.max(block, IO_BUFFER));
+            long w = 0;
+            for (Op op : ops) {
+                if (cancelled)
+                    throw new IOException("cancelled");
+                FileChannel from = op.literal() ? in : old;
+                long at = op.literal() ? op.offset : (long) op.block * block;
+                long len = op.literal() ? op.len : sigs.length(op.block);
+                while (len > 0) {
+                    buf.clear().limit((int) Math.min(buf.capacity(), len));
+                    int n = from.read(buf, at);
+                    if (n <= 0)
+                        throw new IOException("short read");
+                    buf.flip();
+                    sha.update(buf.array(), 0, n);
+                    while (buf.hasRemaining())
+                        w += out.write(buf, w);
+                    at += n;
+                    len -= n;
+                }
+            }
+            out.force(false);
+            bytesWritten.add(w);
+        } catch (IOException e) {
+            Files.deleteIfExists(part);
+            throw e;
+        }
+        byte[] hash = sha.digest();
+        replace(part, dst);
+        return hash;
+    }
+
+    private void transferRange(FileChannel in, long from, FileChannel out, long to, long len) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocateDirect((int) Math.min(IO_BUFFER, Math.max(1, len)));
+        while (len > 0) {
+            buf.clear().limit((int) Math.min(buf.capacity(), len));
+            int n = in.read(buf, from);
+            if (n <= 0)
+                throw new IOException("short read");
+            buf.flip();
+            while (buf.hasRemaining())
+                to += out.write(buf, to);
+            from += n;
+            len -= n;
+            bytesWritten.add(n);
+        }
+    }
+
+    // Weak rolling sums and CRC32Cs of the target's blocks, with a chained hash table on the weak sum
+    private static final class Signatures {
+        final int block;
+        final long size;
+        final int[] strong;
+        private final int[] weak;
+        private final int[] head;
+        private final int[] chain;
+
+        private Signatures(int block, long size, int[] weak, int[] strong) {
+            this.block = block;
+            this.size = size;
+            this.weak = weak;
+            this.strong = strong;
+            int cap = Integer.highestOneBit(Math.max(16, weak.length * 2 - 1)) << 1;
+            head = new int[cap];
+            Arrays.fill(head, -1);
+            chain = new int[weak.length];
+            for (int i = weak.length - 1; i >= 0; i--) { // lowest block first in each chain
+                int slot = mix(weak[i]) & (cap - 1);
+                chain[i] = head[slot];
+                head[slot] = i;
+            }
+        }
+
+        static Signatures of(Path file, int block) throws IOException {
+            try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+                long size = ch.size();
+                int n = (int) ((size + block - 1) / block);
+                int[] weak = new int[n], strong = new int[n];
+                ByteBuffer buf = ByteBuffer.allocate(block);
+                CRC32C crc = new CRC32C();
+                for (int i = 0; i < n; i++) {
+                    buf.clear();
+                    long at = (long) i * block;
+                    while (buf.hasRemaining() && ch.read(buf, at + buf.position()) > 0) {
+                    }
+                    byte[] arr = buf.array();
+                    int len = buf.position();
+                    int a = 0, b = 0;
+                    for (int k = 0; k < len; k++) {
+                        int x = arr[k] & 0xFF;
+                        a += x;
+                        b += (len - k) * x;
+                    }
+                    weak[i] = (a & 0xFFFF) | ((b & 0xFFFF) << 16);
+                    crc.reset();
+                    crc.update(arr, 0, len);
+                    strong[i] = (int) crc.getValue();
+                }
+                return new Signatures(block, size, weak, strong);
+            }
+        }
+
+        int first(int w) {
+            int k = head[mix(w) & (head.length - 1)];
+            while (k >= 0 && weak[k] != w)
+                k = chain[k];
+            return k;
+        }
+
+        int next(int k) {
+            int w = weak[k];
+            k = chain[k];
+            while (k >= 0 && weak[k] != w)
+                k = chain[k];
+            return k;
+        }
+
+        int length(int k) {
+            return (int) Math.min(block, size - (long) k * block);
+        }
+
+        private static int mix(int w) {
+            return w * 0x9E3779B9 >>> 7 ^ w;
+        }
+    }
+
+    // ---- removals ----
+
+    private void removeStale(String rel) {
+        Entry m = manifest.get(rel);
+        Path dst = dst(rel);
+        try {
+            BasicFileAttributes t = Files.readAttributes(dst, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            if (t.isRegularFile() && t.size() == m.size && near(t.lastModifiedTime().toMillis(), m.mtime)) {
+                Files.delete(dst);
+                removed.increment();
+                log.accept("REMOVE " + rel);
+            } else {
+                log.accept("KEEP   " + rel + " (changed on the target)");
+            }
+        } catch (NoSuchFileException e) {
+            // already gone
+        } catch (IOException e) {
+            errors.increment();
+            log.accept("ERROR  " + rel + ": " + e.getMessage());
+            return;
+        }
+        manifest.remove(rel);
+    }
+
+    // ---- manifest ----
+
+    private Map<String, Entry> loadManifest() {
+        Map<String, Entry> m = new HashMap<>();
+        Path f = target.resolve(MANIFEST);
+        if (!Files.isRegularFile(f))
+            return m;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(f), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION)
+                return m;
+            if (!in.readUTF().equals(source.toString())) {
+                log.accept("manifest belongs to another source folder; comparing with the target instead");
+                return m;
+            }
+            int n = in.readInt();
+            for (int i = 0; i < n; i++) {
+                String rel = in.readUTF();
+                long size = in.readLong();
+                long mtime = in.readLong();
+                byte[] hash = null;
+                int hl = in.readUnsignedByte();
+                if (hl > 0) {
+                    hash = new byte[hl];
+                    in.readFully(hash);
+                }
+                m.put(rel, new Entry(size, mtime, hash));
+            }
+        } catch (IOException e) {
+            log.accept("manifest unreadable (" + e.getMessage() + "); comparing with the target instead");
+            return new HashMap<>();
+        }
+        return m;
+    }
+
+    private void saveManifest() throws IOException {
+        Path f = target.resolve(MANIFEST);
+        Path tmp = f.resolveSibling(MANIFEST + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(source.toString());
+            out.writeInt(manifest.size());
+            for (Map.Entry<String, Entry> e : manifest.entrySet()) {
+                Entry v = e.getValue();
+                out.writeUTF(e.getKey());
+                out.writeLong(v.size);
+                out.writeLong(v.mtime);
+                out.writeByte(v.hash == null ? 0 : v.hash.length);
+                if (v.hash != null)
+                    out.write(v.hash);
+            }
+        }
+        replace(tmp, f);
+    }
+
+    // ---- helpers ----
+
+    private String rel(Path file) {
+        return source.relativize(file).toString().replace('\\', '/');
+    }
+
+    private Path dst(String rel) {
+        return target.resolve(rel);
+    }
+
+    private static boolean near(long a, long b) {
+        return Math.abs(a - b) <= MTIME_SLACK_MS;
+    }
+
+    private static void replace(Path from, Path to) throws IOException {
+        try {
+            Files.move(from, to, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(from, to, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // every JRE ships SHA-256
+        }
+    }
+}
@@ -0,0 +1,357 @@
+// Frecency.java — ranked index of visited folders and opened files (quick bar + jump list)
+// - Each visit adds weight 1 that halves every 7 days; the sum is kept as a log relative to a fixed
+//   epoch, so a visit is one O(1) update and ranking never has to re-decay every entry
+// - Pinned entries (bookmarks) rank ahead of everything else and are never evicted
+// - Holds at most a few thousand entries (the weakest unpinned ones are dropped in bulk), so a
+//   filtered jump-list query is a plain scan over precomputed lowercase paths
+// - Persisted to ~/.lcars_places.bin: paths sorted and front-coded, varint counts, float scores;
+//   written by a write-behind thread a few seconds after the last change, and on close
+
+package main;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+final class Frecency {
+
+    // score: the decayed visit count right now
+    record Hit(Path path, boolean dir, boolean pinned, int visits, long lastVisit, double score) {}
+
+    private static final int MAGIC = 0x4C43504C; // "LCPL"
+    private static final int VERSION = 1;
+    private static final long EPOCH_MS = 1_704_067_200_000L; // 2024-01-01
+    private static final double HALF_LIFE_MS = 7 * 24 * 3600_000.0;
+    private static final double LAMBDA = Math.log(2) / HALF_LIFE_MS;
+    private static final double SEED_WEIGHT = Math.log(0.05);
+    private static final int MAX_ENTRIES = 4000;
+    private static final long SAVE_DELAY_MS = 5000;
+
+    private static final class Entry {
+        final String path;
+        final String lower;
+        boolean dir;
+        boolean pinned;
+        int visits;
+        long last;
+        double logScore; // ln(sum of w * e^(lambda * (t - EPOCH)))
+
+        Entry(String path, boolean dir) {
+            this.path = path;
+            this.lower = path.toLowerCase(Locale.ROOT);
+            this.dir = dir;
+            this.logScore = Double.NEGATIVE_INFINITY;
+        }
+    }
+
+    private static final Comparator<Entry> RANK = (a, b) -> a.pinned != b.pinned ? (a.pinned ? -1 : 1)
+            : Double.compare(b.logScore, a.logScore);
+
+    private final File store;
+    private final Map<String, Entry> entries = new HashMap<>();
+    private boolean dirty;
+    private boolean closed;
+    private Thread writer;
+    private final Object saveLock = new Object();
+
+    Frecency(File store) {
+        this.store = store;
+    }
+
+    // Reads the store and starts the write-behind thread
+    synchronized void load() {
+        if (writer != null)
+            return;
+        if (store.isFile()) {
+            try (DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(new FileInputStream(store), 1 << 16))) {
+                read(in);
+            } catch (IOException e) {
+                entries.clear(); // unreadable: start over
+            }
+        }
+        writer = new Thread(this::writeBehind, "places-save");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    synchronized void visit(Path p, boolean dir) {
+        add(p, dir, 0);
+    }
+
+    // Puts a location in the index with a token weight unless it is already there
+    synchronized void seed(Path p) {
+        if (!entries.containsKey(key(p)))
+            add(p, true, SEED_WEIGHT).visits = 0;
+    }
+
+    synchronized void pin(Path p, boolean pinned) {
+        Entry e = entries.get(key(p));
+        if (e == null) {
+            if (!pinned)
+                return;
+            e = add(p, Files.isDirectory(p), SEED_WEIGHT);
+            e.visits = 0;
+        }
+        e.pinned = pinned;
+        changed();
+    }
+
+    synchronized void forget(Path p) {
+        if (entries.remove(key(p)) != null)
+            changed();
+    }
+
+    synchronized boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    // Best n entries; folders only when dirsOnly
+    synchronized List<Hit> top(int n, boolean dirsOnly) {
+        List<Entry> pick = new ArrayList<>();
+        for (Entry e : entries.values())
+            if (!dirsOnly || e.dir)
+                pick.add(e);
+        return hits(pick, n);
+    }
+
+    // Entries whose path contains every space-separated term, in that order (case-insensitive)
+    synchronized List<Hit> query(String q, int n) {
+        String[] terms = q.trim().toLowerCase(Locale.ROOT).split("\\s+");
+        if (terms.length == 1 && terms[0].isEmpty())
+            return top(n, false);
+        List<Entry> pick = new ArrayList<>();
+        for (Entry e : entries.values()) {
+            int at = 0;
+            for (String t : terms) {
+                at = e.lower.indexOf(t, at);
+                if (at < 0)
+                    break;
+                at += t.length();
+            }
+            if (at >= 0)
+                pick.add(e);
+        }
+        return hits(pick, n);
+    }
+
+    // Stops the write-behind thread and writes anything pending
+    void close() {
+        Thread w;
+        synchronized (this) {
+            closed = true;
+            w = writer;
+            notifyAll();
+        }
+        if (w != null) {
+            w.interrupt();
+            try {
+                w.join(); // it may be mid-save; the final save below must not overlap it
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        save();
+    }
+
+    // ---- internals (callers hold the lock) ----
+
+    private Entry add(Path p, boolean dir, double logWeight) {
+        String k = key(p);
+        Entry e = entries.get(k);
+        if (e == null) {
+            e = new Entry(k, dir);
+            entries.put(k, e);
+            if (entries.size() > MAX_ENTRIES + MAX_ENTRIES / 4)
+                evict();
+        }
+        long now = System.currentTimeMillis();
+        e.dir = dir;
+        e.visits++;
+        e.last = now;
+        e.logScore = logAdd(e.logScore, LAMBDA * (now - EPOCH_MS) + logWeight);
+        changed();
+        return e;
+    }
+
+    // Drops the weakest unpinned entries back down to MAX_ENTRIES (once per MAX_ENTRIES / 4 additions)
+    private void evict() {
+        List<Entry> all = new ArrayList<>(entries.values());
+        all.sort(RANK);
+        for (int i = MAX_ENTRIES; i < all.size(); i++)
+            if (!all.get(i).pinned)
+                entries.remove(all.get(i).path);
+    }
+
+    // Best n of pick, best first: a bounded heap, so a broad query doesn't sort every match
+    private List<Hit> hits(List<Entry> pick, int n) {
+        PriorityQueue<Entry> best = new PriorityQueue<>(Math.max(1, n + 1), RANK.reversed());
+        for (Entry e : pick) {
+            if (best.size() < n) {
+                best.add(e);
+            } else if (n > 0 && RANK.compare(e, best.peek()) < 0) {
+                best.poll();
+                best.add(e);
+            }
+        }
+        double nowLog = LAMBDA * (System.currentTimeMillis() - EPOCH_MS);
+        Hit[] out = new Hit[best.size()];
+        for (int i = out.length - 1; i >= 0; i--) {
+            Entry e = best.poll();
+            out[i] = new Hit(Paths.get(e.path), e.dir, e.pinned, e.visits, e.last, Math.exp(e.logScore - nowLog));
+        }
+        return Arrays.asList(out);
+    }
+
+    private void changed() {
+        dirty = true;
+        notifyAll();
+    }
+
+    private static double logAdd(double a, double b) {
+        if (a == Double.NEGATIVE_INFINITY)
+            return b;
+        double hi = Math.max(a, b), lo = Math.min(a, b);
+        return hi + Math.log1p(Math.exp(lo - hi));
+    }
+
+    private static String key(Path p) {
+        return p.toAbsolutePath().normalize().toString();
+    }
+
+    // ---- persistence ----
+
+    // Waits for a change, lets further changes pile up for a few seconds, then writes once
+    private void writeBehind() {
+        while (true) {
+            try {
+                synchronized (this) {
+                    while (!dirty && !closed)
+                        wait();
+                    if (closed)
+                        return;
+                }
+                Thread.sleep(SAVE_DELAY_MS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            save();
+        }
+    }
+
+    void save() {
+        synchronized (saveLock) { // one writer at a time: both use the same .tmp file
+            write();
+        }
+    }
+
+    private void write() {
+        Entry[] snap;
+        synchronized (this) {
+            if (!dirty)
+                return;
+            snap = entries.values().toArray(new Entry[0]);
+            dirty = false;
+        }
+        Arrays.sort(snap, Comparator.comparing(e -> e.path));
+        File tmp = new File(store.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tmp), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            writeVarint(out, snap.length);
+            byte[] prev = new byte[0];
+            for (Entry e : snap) {
+                // fields are read without the lock: a racing visit at worst saves the previous score
+                byte[] b = e.path.getBytes(StandardCharsets.UTF_8);
+                int common = 0;
+                while (common < prev.length && common < b.length && prev[common] == b[common])
+                    common++;
+                writeVarint(out, common);
+                writeVarint(out, b.length - common);
+                out.write(b, common, b.length - common);
+                out.writeByte((e.dir ? 1 : 0) | (e.pinned ? 2 : 0));
+                writeVarint(out, e.visits);
+                writeVarint(out, (int) Math.max(0, (e.last - EPOCH_MS) / 1000));
+                out.writeFloat((float) e.logScore);
+                prev = b;
+            }
+        } catch (IOException ex) {
+            tmp.delete();
+            synchronized (this) {
+                dirty = true;
+            }
+            return;
+        }
+        try {
+            Files.move(tmp.toPath(), store.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            tmp.delete();
+        }
+    }
+
+    private void read(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC || in.readInt() != VERSION)
+            return;
+        int n = readVarint(in);
+        byte[] prev = new byte[0];
+        for (int i = 0; i < n; i++) {
+            int common = readVarint(in);
+            int rest = readVarint(in);
+            if (common > prev.length)
+                throw new IOException("corrupt places index");
+            byte[] b = Arrays.copyOf(prev, common + rest);
+            in.readFully(b, common, rest);
+            int flags = in.readUnsignedByte();
+            Entry e = new Entry(new String(b, StandardCharsets.UTF_8), (flags & 1) != 0);
+            e.pinned = (flags & 2) != 0;
+            e.visits = readVarint(in);
+            e.last = EPOCH_MS + readVarint(in) * 1000L;
+            e.logScore = in.readFloat();
+            entries.put(e.path, e);
+            prev = b;
+        }
+    }
+
+    private static void writeVarint(DataOutputStream out, int v) throws IOException {
+        while ((v & ~0x7F) != 0) {
+            out.writeByte((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        out.writeByte(v);
+    }
+
+    private static int readVarint(DataInputStream in) throws IOException {
+        int v = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.readUnsignedByte();
+            v |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return v;
+        }
+        throw new IOException("corrupt places index");
+    }
+}
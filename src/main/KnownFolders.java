@@ -0,0 +1,269 @@
+// KnownFolders.java — Desktop / Documents / Downloads / ... resolved once and cached
+// - Linux: the XDG user dirs (~/.config/user-dirs.dirs, honouring XDG_CONFIG_HOME), so localized or
+//   moved folders ("Schreibtisch", "~/Stuff/Desktop") are found
+// - Windows: the shell's User Shell Folders (redirected folders, OneDrive backup), then the OneDrive
+//   environment roots, then the plain profile folders
+// - macOS: Movies stands in for Videos
+// - Results keep their canonical path; the config file is re-checked at most every 2 s and
+//   everything is resolved again only when it changed (or a cached folder went missing)
+// - isDirectChild() canonicalizes each parent folder once (small LRU), not every file
+
+package main;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+final class KnownFolders {
+
+    static final List<String> KINDS = List.of("Desktop", "Documents", "Downloads", "Pictures", "Music", "Videos");
+
+    private static final long RECHECK_NANOS = TimeUnit.SECONDS.toNanos(2);
+    private static final int MAX_PARENTS = 256;
+
+    private static final String OS = System.getProperty("os.name", "").toLowerCase(Locale.ROOT);
+    private static final boolean IS_WIN = OS.contains("win");
+    private static final boolean IS_MAC = OS.contains("mac");
+
+    private record Resolved(File dir, String canonical) {}
+
+    private static Map<String, Resolved> resolved = Map.of();
+    private static long configStamp = Long.MIN_VALUE;
+    private static long checkedAt;
+    private static boolean loaded;
+
+    // canonical path of recently seen parent folders (desktop tiles share one parent)
+    private static final Map<String, String> PARENTS = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > MAX_PARENTS;
+        }
+    };
+
+    private KnownFolders() {
+    }
+
+    // The folder for kind, or null when the system has none
+    static synchronized File get(String kind) {
+        refreshIfStale();
+        Resolved r = resolved.get(kind);
+        return r == null ? null : r.dir;
+    }
+
+    // true when f sits directly in the known folder (not in a subfolder of it)
+    static boolean isDirectChild(String kind, File f) {
+        String known;
+        synchronized (KnownFolders.class) {
+            refreshIfStale();
+            Resolved r = resolved.get(kind);
+            if (r == null)
+                return false;
+            known = r.canonical;
+        }
+        File parent = f.getAbsoluteFile().getParentFile();
+        if (parent == null)
+            return false;
+        String p = canonicalParent(parent);
+        return p != null && (IS_WIN || IS_MAC ? p.equalsIgnoreCase(known) : p.equals(known));
+    }
+
+    static synchronized void invalidate() {
+        loaded = false;
+        PARENTS.clear();
+    }
+
+    private static String canonicalParent(File parent) {
+        String key = parent.getPath();
+        synchronized (PARENTS) {
+            String hit = PARENTS.get(key);
+            if (hit != null)
+                return hit;
+        }
+        try {
+            String c = parent.getCanonicalPath();
+            synchronized (PARENTS) {
+                PARENTS.put(key, c);
+            }
+            return c;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static void refreshIfStale() {
+        long now = System.nanoTime();
+        if (loaded && now - checkedAt < RECHECK_NANOS)
+            return;
+        checkedAt = now;
+        long stamp = configStamp();
+        if (loaded && stamp == configStamp && allPresent())
+            return;
+        configStamp = stamp;
+        resolved = resolveAll();
+        synchronized (PARENTS) {
+            PARENTS.clear();
+        }
+        loaded = true;
+    }
+
+    private static boolean allPresent() {
+        for (Resolved r : resolved.values())
+            if (!r.dir.isDirectory())
+                return false;
+        return true;
+    }
+
+    private static Map<String, Resolved> resolveAll() {
+        String home = System.getProperty("user.home");
+        Map<String, String> configured = IS_WIN ? windowsShellFolders() : xdgUserDirs(home);
+        Map<String, Resolved> out = new HashMap<>();
+        for (String kind : KINDS) {
+            for (File f : candidates(kind, home, configured)) {
+                if (!f.isDirectory())
+                    continue;
+                try {
+                    out.put(kind, new Resolved(f, f.getCanonicalPath()));
+                } catch (IOException e) {
+                    out.put(kind, new Resolved(f, f.getAbsolutePath()));
+                }
+                break;
+            }
+        }
+        return Map.copyOf(out);
+    }
+
+    private static List<File> candidates(String kind, String home, Map<String, String> configured) {
+        List<File> c = new ArrayList<>();
+        String conf = configured.get(kind);
+        if (conf != null)
+            c.add(new File(conf));
+        if (IS_WIN) {
+            for (String env : new String[] { "OneDrive", "OneDriveConsumer", "OneDriveCommercial" }) {
+                String root = System.getenv(env);
+                if (root != null && !root.isBlank())
+                    c.add(new File(root, kind));
+            }
+            c.add(new File(home, "OneDrive/" + kind));
+            if (kind.equals("Documents"))
+                c.add(new File(home, "Documents/My Documents"));
+        }
+        if (IS_MAC && kind.equals("Videos"))
+            c.add(new File(home, "Movies"));
+        c.add(new File(home, kind));
+        return c;
+    }
+
+    // ---- Linux / BSD: XDG user dirs ----
+
+    private static Path xdgConfig() {
+        String base = System.getenv("XDG_CONFIG_HOME");
+        if (base == null || base.isBlank())
+            base = System.getProperty("user.home") + File.separator + ".config";
+        return Path.of(base, "user-dirs.dirs");
+    }
+
+    private static long configStamp() {
+        if (IS_WIN)
+            return 0; // the registry has no cheap change stamp; a missing folder triggers a re-read
+        try {
+            return Files.getLastModifiedTime(xdgConfig()).toMillis();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    // XDG_DESKTOP_DIR="$HOME/Desktop" -> Desktop=/home/me/Desktop. A value of just $HOME means the
+    // folder is switched off; it is skipped so the plain fallback (or nothing) applies.
+    private static Map<String, String> xdgUserDirs(String home) {
+        Map<String, String> keys = Map.of(
+                "XDG_DESKTOP_DIR", "Desktop", "XDG_DOCUMENTS_DIR", "Documents", "XDG_DOWNLOAD_DIR", "Downloads",
+                "XDG_PICTURES_DIR", "Pictures", "XDG_MUSIC_DIR", "Music", "XDG_VIDEOS_DIR", "Videos");
+        Map<String, String> out = new HashMap<>();
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(xdgConfig(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            return out;
+        }
+        for (String line : lines) {
+            line = line.trim();
+            int eq = line.indexOf('=');
+            if (line.startsWith("#") || eq < 0)
+                continue;
+            String kind = keys.get(line.substring(0, eq).trim());
+            String v = line.substring(eq + 1).trim();
+            if (kind == null || v.length() < 2 || !v.startsWith("\"") || !v.endsWith("\""))
+                continue;
+            v = v.substring(1, v.length() - 1).replace("\\\"", "\"");
+            if (v.startsWith("$HOME"))
+                v = home + v.substring(5);
+            else if (!v.startsWith("/"))
+                continue; // the spec only allows $HOME-relative or absolute paths
+            if (new File(v).getAbsoluteFile().equals(new File(home).getAbsoluteFile()))
+                continue;
+            out.put(kind, v);
+        }
+        return out;
+    }
+
+    // ---- Windows: User Shell Folders (follows redirection and OneDrive folder backup) ----
+
+    private static Map<String, String> windowsShellFolders() {
+        Map<String, String> names = Map.of(
+                "desktop", "Desktop", "personal", "Documents",
+                "{374de290-123f-4565-9164-39c4925e467b}", "Downloads",
+                "my pictures", "Pictures", "my music", "Music", "my video", "Videos");
+        Map<String, String> out = new HashMap<>();
+        try {
+            Process p = new ProcessBuilder("reg", "query",
+                    "HKCU\\Software\\Microsoft\\Windows\\CurrentVersion\\Explorer\\User Shell Folders")
+                    .redirectErrorStream(true).start();
+            try (BufferedReader r = new BufferedReader(new InputStreamReader(p.getInputStream()))) {
+                String line;
+                while ((line = r.readLine()) != null) {
+                    // "    Desktop    REG_EXPAND_SZ    %USERPROFILE%\Desktop"
+                    String[] parts = line.trim().split("\\s{2,}|\\t+");
+                    if (parts.length < 3 || !parts[1].startsWith("REG_"))
+                        continue;
+                    String kind = names.get(parts[0].toLowerCase(Locale.ROOT));
+                    if (kind != null)
+                        out.put(kind, expandEnv(parts[2]));
+                }
+            }
+            p.waitFor(5, TimeUnit.SECONDS);
+        } catch (IOException e) {
+            // no reg.exe: fall back to the profile candidates
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return out;
+    }
+
+    private static String expandEnv(String s) {
+        StringBuilder b = new StringBuilder();
+        int i = 0;
+        while (i < s.length()) {
+            int start = s.indexOf('%', i);
+            int end = start < 0 ? -1 : s.indexOf('%', start + 1);
+            if (end < 0) {
+                b.append(s, i, s.length());
+                break;
+            }
+            String v = System.getenv(s.substring(start + 1, end));
+            b.append(s, i, start).append(v != null ? v : s.substring(start, end + 1));
+            i = end + 1;
+        }
+        return b.toString();
+    }
+}
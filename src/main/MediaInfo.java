@@ -0,0 +1,389 @@
+// MediaInfo.java — photo / audio details for the properties pane, from the file headers alone
+// - JPEG / TIFF: EXIF camera (make + model), date taken and dimensions (the SOF header when present)
+// - PNG / GIF / BMP / WebP: dimensions from their fixed headers
+// - MP3: ID3v2 (2.2 - 2.4) title / artist / album, ID3v1 as a fallback, duration from TLEN, the
+//   Xing / VBRI frame count or the first frame's bitrate
+// - Everything is a bounded positional FileChannel read (a few KB; never the pixels or the audio),
+//   segments and frames we don't need are skipped by seeking past them
+// - Results are cached by path, keyed on mtime + size, so going back through a folder is free
+
+package main;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+final class MediaInfo {
+
+    private static final int MAX_CACHED = 2048;
+    private static final int MAX_EXIF = 64 * 1024;
+    private static final int MAX_SEGMENTS = 64;
+    private static final int MAX_FRAMES = 256;
+    private static final int SYNC_SCAN = 64 * 1024;
+
+    private record Cached(long mtime, long size, Map<String, String> fields) {}
+
+    // access-ordered: the eldest entry is the least recently shown file
+    private static final LinkedHashMap<Path, Cached> CACHE = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Path, Cached> eldest) {
+            return size() > MAX_CACHED;
+        }
+    };
+
+    private MediaInfo() {
+    }
+
+    // Label -> value, in display order; empty for files that are neither photos nor audio
+    static Map<String, String> read(Path p) {
+        BasicFileAttributes a;
+        try {
+            a = Files.readAttributes(p, BasicFileAttributes.class);
+        } catch (IOException e) {
+            return Map.of();
+        }
+        if (!a.isRegularFile() || a.size() < 16)
+            return Map.of();
+        long mtime = a.lastModifiedTime().toMillis();
+        synchronized (CACHE) {
+            Cached c = CACHE.get(p);
+            if (c != null && c.mtime == mtime && c.size == a.size())
+                return c.fields;
+        }
+        Map<String, String> out = new LinkedHashMap<>();
+        try (FileChannel ch = FileChannel.open(p, StandardOpenOption.READ)) {
+            parse(ch, a.size(), out);
+        } catch (IOException | RuntimeException e) {
+            // truncated or odd headers: keep whatever was found before the problem
+        }
+        Map<String, String> fields = Collections.unmodifiableMap(out);
+        synchronized (CACHE) {
+            CACHE.put(p, new Cached(mtime, a.size(), fields));
+        }
+        return fields;
+    }
+
+    private static void parse(FileChannel ch, long size, Map<String, String> out) throws IOException {
+        byte[] h = bytes(ch, 0, 32);
+        if (u8(h, 0) == 0xFF && u8(h, 1) == 0xD8) {
+            jpeg(ch, size, out);
+        } else if (ascii(h, 0, 4).equals("II*\0") || ascii(h, 0, 4).equals("MM\0*")) {
+            exif(bytes(ch, 0, (int) Math.min(MAX_EXIF, size)), 0, out);
+        } else if (u8(h, 0) == 0x89 && ascii(h, 1, 3).equals("PNG") && ascii(h, 12, 4).equals("IHDR")) {
+            dimensions(out, be32(h, 16), be32(h, 20));
+        } else if (ascii(h, 0, 4).equals("GIF8")) {
+            dimensions(out, le16(h, 6), le16(h, 8));
+        } else if (ascii(h, 0, 2).equals("BM")) {
+            dimensions(out, le32(h, 18), Math.abs(le32(h, 22)));
+        } else if (ascii(h, 0, 4).equals("RIFF") && ascii(h, 8, 4).equals("WEBP")) {
+            webp(h, out);
+        } else if (ascii(h, 0, 3).equals("ID3") || (u8(h, 0) == 0xFF && (u8(h, 1) & 0xE0) == 0xE0)) {
+            mp3(ch, size, out);
+        }
+    }
+
+    // ---- images ----
+
+    // Walks the marker segments up to the image data; only APP1 (EXIF) and SOF payloads are read
+    private static void jpeg(FileChannel ch, long size, Map<String, String> out) throws IOException {
+        long pos = 2;
+        int w = -1, hgt = -1;
+        for (int seg = 0; seg < MAX_SEGMENTS && pos + 4 <= size; seg++) {
+            byte[] m = bytes(ch, pos, 4);
+            if (u8(m, 0) != 0xFF)
+                break;
+            int marker = u8(m, 1);
+            if (marker == 0xFF) { // fill byte
+                pos++;
+                continue;
+            }
+            if (marker == 0xD9 || marker == 0xDA) // end of image / start of scan
+                break;
+            if (marker == 0x01 || (marker >= 0xD0 && marker <= 0xD7)) { // no length
+                pos += 2;
+                continue;
+            }
+            int len = be16(m, 2);
+            if (marker == 0xE1 && len > 8) {
+                byte[] app = bytes(ch, pos + 4, Math.min(len - 2, MAX_EXIF));
+                if (ascii(app, 0, 6).equals("Exif\0\0"))
+                    exif(app, 6, out);
+            } else if (marker >= 0xC0 && marker <= 0xCF && marker != 0xC4 && marker != 0xC8 && marker != 0xCC) {
+                byte[] sof = bytes(ch, pos + 4, 5);
+                hgt = be16(sof, 1);
+                w = be16(sof, 3);
+            }
+            pos += 2 + len;
+        }
+        if (w > 0 && hgt > 0)
+            dimensions(out, w, hgt); // the frame header beats the EXIF tags, which editors leave stale
+    }
+
+    // TIFF structure at b[base..]: IFD0 (make, model, date, size) and its EXIF sub-IFD
+    private static void exif(byte[] b, int base, Map<String, String> out) {
+        ByteBuffer t = ByteBuffer.wrap(b, base, b.length - base).slice();
+        t.order(ascii(b, base, 2).equals("II") ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+        Map<Integer, Object> tags = new LinkedHashMap<>();
+        long ifd0 = t.getInt(4) & 0xFFFFFFFFL;
+        ifd(t, ifd0, tags);
+        if (tags.get(0x8769) instanceof Long sub)
+            ifd(t, sub, tags);
+        String make = tags.get(0x010F) instanceof String s ? s.trim() : "";
+        String model = tags.get(0x0110) instanceof String s ? s.trim() : "";
+        String camera = model.toLowerCase().startsWith(make.toLowerCase()) ? model : (make + " " + model).trim();
+        Object w = tags.containsKey(0xA002) ? tags.get(0xA002) : tags.get(0x0100);
+        Object h = tags.containsKey(0xA003) ? tags.get(0xA003) : tags.get(0x0101);
+        if (w instanceof Long ww && h instanceof Long hh)
+            dimensions(out, ww, hh);
+        if (!camera.isEmpty())
+            out.put("Camera:", camera);
+        Object taken = tags.containsKey(0x9003) ? tags.get(0x9003) : tags.get(0x0132);
+        if (taken instanceof String s && s.length() >= 19 && !s.startsWith("0000"))
+            out.put("Taken:", s.substring(0, 10).replace(':', '-') + s.substring(10, 19));
+    }
+
+    private static void ifd(ByteBuffer t, long at, Map<Integer, Object> tags) {
+        if (at <= 0 || at + 2 > t.limit())
+            return;
+        int n = t.getShort((int) at) & 0xFFFF;
+        for (int i = 0; i < n; i++) {
+            int e = (int) at + 2 + i * 12;
+            if (e + 12 > t.limit())
+                return;
+            int tag = t.getShort(e) & 0xFFFF;
+            int type = t.getShort(e + 2) & 0xFFFF;
+            long count = t.getInt(e + 4) & 0xFFFFFFFFL;
+            switch (type) {
+                case 2 -> { // ASCII, inline when it fits in 4 bytes
+                    int off = count <= 4 ? e + 8 : t.getInt(e + 8);
+                    if (off < 0 || off + count > t.limit())
+                        continue;
+                    byte[] s = new byte[(int) count];
+                    t.get(off, s);
+                    int z = 0;
+                    while (z < s.length && s[z] != 0)
+                        z++;
+                    tags.put(tag, new String(s, 0, z, StandardCharsets.ISO_8859_1));
+                }
+                case 3 -> tags.put(tag, (long) (t.getShort(e + 8) & 0xFFFF));
+                case 4 -> tags.put(tag, t.getInt(e + 8) & 0xFFFFFFFFL);
+                default -> {
+                }
+            }
+        }
+    }
+
+    private static void webp(byte[] h, Map<String, String> out) {
+        switch (ascii(h, 12, 4)) {
+            case "VP8 " -> dimensions(out, le16(h, 26) & 0x3FFF, le16(h, 28) & 0x3FFF);
+            case "VP8L" -> {
+                int b0 = u8(h, 21), b1 = u8(h, 22), b2 = u8(h, 23), b3 = u8(h, 24);
+                dimensions(out, 1 + (((b1 & 0x3F) << 8) | b0), 1 + (((b3 & 0xF) << 10) | (b2 << 2) | ((b1 & 0xC0) >> 6)));
+            }
+            case "VP8X" -> dimensions(out, 1 + (le32(h, 24) & 0xFFFFFF), 1 + (le32(h, 27) & 0xFFFFFF));
+            default -> {
+            }
+        }
+    }
+
+    private static void dimensions(Map<String, String> out, long w, long h) {
+        if (w > 0 && h > 0)
+            out.put("Dimensions:", w + " × " + h);
+    }
+
+    // ---- audio ----
+
+    private static final int[][] BITRATES = {
+            { 0, 32, 64, 96, 128, 160, 192, 224, 256, 288, 320, 352, 384, 416, 448 }, // MPEG1 L1
+            { 0, 32, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320, 384 },    // MPEG1 L2
+            { 0, 32, 40, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320 },     // MPEG1 L3
+            { 0, 32, 48, 56, 64, 80, 96, 112, 128, 144, 160, 176, 192, 224, 256 },    // MPEG2 L1
+            { 0, 8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160 },         // MPEG2 L2 / L3
+    };
+    private static final int[] SAMPLE_RATES = { 44100, 48000, 32000 };
+
+    private static void mp3(FileChannel ch, long size, Map<String, String> out) throws IOException {
+        long audio = 0;
+        long tlen = -1;
+        byte[] h = bytes(ch, 0, 10);
+        if (ascii(h, 0, 3).equals("ID3")) {
+            int ver = u8(h, 3);
+            long tagSize = syncsafe(h, 6);
+            audio = 10 + tagSize + ((u8(h, 5) & 0x10) != 0 ? 10 : 0);
+            tlen = id3v2(ch, ver, (u8(h, 5) & 0x40) != 0, Math.min(10 + tagSize, size), out);
+        }
+        if (!out.containsKey("Title:") && size >= 128) {
+            byte[] v1 = bytes(ch, size - 128, 128);
+            if (ascii(v1, 0, 3).equals("TAG")) {
+                putText(out, "Title:", latin1(v1, 3, 30));
+                putText(out, "Artist:", latin1(v1, 33, 30));
+                putText(out, "Album:", latin1(v1, 63, 30));
+            }
+        }
+        long ms = tlen > 0 ? tlen : mpegDuration(ch, audio, size);
+        if (ms > 0) {
+            long s = ms / 1000;
+            out.put("Duration:", s >= 3600 ? String.format("%d:%02d:%02d", s / 3600, s / 60 % 60, s % 60)
+                    : String.format("%d:%02d", s / 60, s % 60));
+        }
+    }
+
+    // Frames are visited by their headers; only the few text frames we show are read. Returns TLEN
+    // in ms, or -1.
+    private static long id3v2(FileChannel ch, int ver, boolean extended, long end, Map<String, String> out)
+            throws IOException {
+        long pos = 10;
+        if (extended && ver >= 3) {
+            byte[] x = bytes(ch, pos, 4);
+            pos += ver == 4 ? syncsafe(x, 0) : 4 + be32(x, 0);
+        }
+        int idLen = ver == 2 ? 3 : 4;
+        int hdrLen = ver == 2 ? 6 : 10;
+        long tlen = -1;
+        for (int i = 0; i < MAX_FRAMES && pos + hdrLen <= end; i++) {
+            byte[] fh = bytes(ch, pos, hdrLen);
+            if (fh[0] == 0) // padding
+                break;
+            String id = ascii(fh, 0, idLen);
+            long len = ver == 2 ? (u8(fh, 3) << 16) | (u8(fh, 4) << 8) | u8(fh, 5)
+                    : ver == 4 ? syncsafe(fh, 4) : be32(fh, 4) & 0xFFFFFFFFL;
+            long body = pos + hdrLen;
+            if (len <= 0 || body + len > end)
+                break;
+            String label = switch (id) {
+                case "TIT2", "TT2" -> "Title:";
+                case "TPE1", "TP1" -> "Artist:";
+                case "TALB", "TAL" -> "Album:";
+                case "TLEN", "TLE" -> "TLEN";
+                default -> null;
+            };
+            if (label != null && len <= 4096) {
+                String v = id3Text(bytes(ch, body, (int) len));
+                if (label.equals("TLEN")) {
+                    try {
+                        tlen = Long.parseLong(v.trim());
+                    } catch (NumberFormatException ignored) {
+                    }
+                } else {
+                    putText(out, label, v);
+                }
+            }
+            pos = body + len;
+        }
+        return tlen;
+    }
+
+    private static String id3Text(byte[] b) {
+        if (b.length < 2)
+            return "";
+        Charset cs = switch (b[0]) {
+            case 1 -> StandardCharsets.UTF_16;
+            case 2 -> StandardCharsets.UTF_16BE;
+            case 3 -> StandardCharsets.UTF_8;
+            default -> StandardCharsets.ISO_8859_1;
+        };
+        String s = new String(b, 1, b.length - 1, cs);
+        int z = s.indexOf('\0');
+        return z >= 0 ? s.substring(0, z) : s;
+    }
+
+    // From the first MPEG frame after the tag: the Xing / Info or VBRI frame count when there is one,
+    // otherwise the constant-bitrate estimate from the audio size
+    private static long mpegDuration(FileChannel ch, long audio, long size) throws IOException {
+        byte[] b = bytes(ch, audio, (int) Math.min(SYNC_SCAN, size - audio));
+        for (int i = 0; i + 4 <= b.length; i++) {
+            if (u8(b, i) != 0xFF || (u8(b, i + 1) & 0xE0) != 0xE0)
+                continue;
+            int version = (u8(b, i + 1) >> 3) & 3;   // 3 = MPEG1, 2 = MPEG2, 0 = MPEG2.5
+            int layer = (u8(b, i + 1) >> 1) & 3;     // 1 = III, 2 = II, 3 = I
+            int br = u8(b, i + 2) >> 4;
+            int sr = (u8(b, i + 2) >> 2) & 3;
+            if (version == 1 || layer == 0 || br == 0 || br == 15 || sr == 3)
+                continue;
+            boolean v1 = version == 3;
+            int kbps = BITRATES[v1 ? 3 - layer : layer == 3 ? 3 : 4][br];
+            int rate = SAMPLE_RATES[sr] >> (v1 ? 0 : version == 2 ? 1 : 2);
+            int samples = layer == 3 ? 384 : layer == 2 || v1 ? 1152 : 576;
+            boolean mono = (u8(b, i + 3) >> 6) == 3;
+            int xing = i + 4 + (v1 ? (mono ? 17 : 32) : (mono ? 9 : 17));
+            long frames = -1;
+            if (xing + 12 <= b.length && (ascii(b, xing, 4).equals("Xing") || ascii(b, xing, 4).equals("Info"))
+                    && (be32(b, xing + 4) & 1) != 0)
+                frames = be32(b, xing + 8) & 0xFFFFFFFFL;
+            else if (i + 36 + 18 <= b.length && ascii(b, i + 36, 4).equals("VBRI"))
+                frames = be32(b, i + 36 + 14) & 0xFFFFFFFFL;
+            if (frames > 0)
+                return frames * samples * 1000L / rate;
+            return (size - audio - i) * 8L / kbps;
+        }
+        return -1;
+    }
+
+    private static void putText(Map<String, String> out, String label, String v) {
+        v = v.trim();
+        if (!v.isEmpty())
+            out.putIfAbsent(label, v);
+    }
+
+    // ---- bytes ----
+
+    // Positional read of at most len bytes (fewer at end of file); never touches the channel position
+    private static byte[] bytes(FileChannel ch, long pos, int len) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(Math.max(0, len));
+        while (buf.hasRemaining()) {
+            int n = ch.read(buf, pos + buf.position());
+            if (n < 0)
+                break;
+        }
+        byte[] out = new byte[buf.position()];
+        buf.flip().get(out);
+        return out;
+    }
+
+    private static int u8(byte[] b, int i) {
+        return i < b.length ? b[i] & 0xFF : 0;
+    }
+
+    private static int be16(byte[] b, int i) {
+        return (u8(b, i) << 8) | u8(b, i + 1);
+    }
+
+    private static int le16(byte[] b, int i) {
+        return u8(b, i) | (u8(b, i + 1) << 8);
+    }
+
+    private static int be32(byte[] b, int i) {
+        return (be16(b, i) << 16) | be16(b, i + 2);
+    }
+
+    private static int le32(byte[] b, int i) {
+        return le16(b, i) | (le16(b, i + 2) << 16);
+    }
+
+    private static long syncsafe(byte[] b, int i) {
+        return ((u8(b, i) & 0x7F) << 21) | ((u8(b, i + 1) & 0x7F) << 14) | ((u8(b, i + 2) & 0x7F) << 7)
+                | (u8(b, i + 3) & 0x7F);
+    }
+
+    private static String ascii(byte[] b, int i, int len) {
+        if (i + len > b.length)
+            return "";
+        return new String(b, i, len, StandardCharsets.ISO_8859_1);
+    }
+
+    private static String latin1(byte[] b, int i, int len) {
+        String s = ascii(b, i, len);
+        int z = s.indexOf('\0');
+        return z >= 0 ? s.substring(0, z) : s;
+    }
+}
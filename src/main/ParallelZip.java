@@ -0,0 +1,618 @@
+// ParallelZip.java — multi-threaded zip creation and streaming extraction for the transfer queue
+// - Files are cut into 1 MB blocks that are deflated in parallel; each block is primed with the
+//   previous block's last 32 KB as its dictionary (the pigz trick), so the ratio stays close to serial
+// - Blocks are written strictly in order; reader, deflate pool and writer are joined by a bounded
+//   queue, so memory stays at a few blocks per core however big the tree is
+// - Headers are written by hand (ZIP64 where sizes or offsets need it); a multi-block entry's local
+//   header is patched in place once its CRC and compressed size are known
+// - Already-compressed formats are stored, not deflated; a single-block entry keeps whichever is smaller
+// - Extraction reads the central directory once and inflates entries in parallel, each worker
+//   streaming to disk through its own 64 KB buffer
+
+package main;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+final class ParallelZip {
+
+    interface Progress {
+        boolean proceed(); // blocks while paused; false once cancelled
+
+        void addTotals(long bytes, long files);
+
+        void bytes(long n);
+
+        void file();
+
+        void fail(Path p, Exception e);
+    }
+
+    record Source(Path file, String name, long size, long mtime, boolean dir) {}
+
+    private static final int BLOCK = 1 << 20;
+    private static final int DICT = 32 * 1024;
+    private static final int THREADS = Runtime.getRuntime().availableProcessors();
+    private static final long MAX32 = 0xFFFFFFFFL;
+    private static final long ZIP64_FILE = 0xF0000000L; // leaves room for deflate growing incompressible data
+    private static final int STORED = 0, DEFLATED = 8;
+    private static final Set<String> PRECOMPRESSED = Set.of(
+            "zip", "jar", "apk", "gz", "tgz", "bz2", "xz", "7z", "rar", "zst", "lz4",
+            "jpg", "jpeg", "png", "gif", "webp", "heic", "avif",
+            "mp3", "m4a", "aac", "ogg", "opus", "flac", "mp4", "m4v", "mkv", "webm", "mov", "avi",
+            "docx", "xlsx", "pptx", "odt", "epub", "pdf");
+
+    private static final ExecutorService POOL = Executors.newFixedThreadPool(THREADS, r -> {
+        Thread t = new Thread(r, "zip-worker");
+        t.setDaemon(true);
+        return t;
+    });
+    private static final ThreadLocal<Deflater> DEFLATER =
+            ThreadLocal.withInitial(() -> new Deflater(Deflater.DEFAULT_COMPRESSION, true));
+    private static final ThreadLocal<byte[]> EXTRACT_BUFFER = ThreadLocal.withInitial(() -> new byte[64 * 1024]);
+
+    private ParallelZip() {
+    }
+
+    // ===== Create =====
+
+    // Entry list for a selection; names are relative to each source's parent folder
+    static List<Source> plan(List<Path> roots, Progress p) {
+        List<Source> out = new ArrayList<>();
+        for (Path root : roots) {
+            Path base = root.getParent();
+            try {
+                Files.walkFileTree(root, new SimpleFileVisitor<>() {
+                    @Override
+                    public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes a) {
+                        if (!p.proceed())
+                            return FileVisitResult.TERMINATE;
+                        out.add(new Source(dir, entryName(base, dir) + "/", 0, a.lastModifiedTime().toMillis(), true));
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFile(Path file, BasicFileAttributes a) {
+                        if (a.isRegularFile()) // links and devices are left out
+                            out.add(new Source(file, entryName(base, file), a.size(), a.lastModifiedTime().toMillis(),
+                                    false));
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFileFailed(Path file, IOException e) {
+                        p.fail(file, e);
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+            } catch (IOException e) {
+                p.fail(root, e);
+            }
+        }
+        return out;
+    }
+
+    private static String entryName(Path base, Path p) {
+        Path rel = base != null ? base.relativize(p) : p;
+        StringBuilder sb = new StringBuilder();
+        for (Path part : rel) {
+            if (!sb.isEmpty())
+                sb.append('/');
+            sb.append(part);
+        }
+        return sb.toString();
+    }
+
+    // entry < 0 ends the stream; seq < 0 aborts the open entry (its file failed mid-read)
+    private record Block(int entry, int seq, boolean last, byte[] raw, int len, Future<byte[]> packed) {}
+
+    private static final Block END = new Block(-1, 0, true, null, 0, null);
+
+    // Writes plan into archive (via archive.part, renamed into place only when complete)
+    static void zip(List<Source> plan, Path archive, Progress p) throws IOException {
+        long total = 0;
+        int files = 0;
+        for (Source s : plan) {
+            total += s.size;
+            if (!s.dir)
+                files++;
+        }
+        p.addTotals(total, files);
+
+        Path part = archive.resolveSibling(archive.getFileName() + ".part");
+        BlockingQueue<Block> queue = new ArrayBlockingQueue<>(THREADS * 2 + 2);
+        AtomicBoolean stop = new AtomicBoolean();
+        Thread reader = new Thread(() -> readAll(plan, queue, stop, p), "zip-reader");
+        reader.setDaemon(true);
+        boolean complete = false;
+        try (FileChannel ch = FileChannel.open(part, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            reader.start();
+            Writer w = new Writer(ch);
+            if (w.drain(plan, queue, p)) {
+                w.finish();
+                complete = true;
+            }
+        } finally {
+            stop.set(true);
+            queue.clear();
+            try {
+                reader.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (complete)
+                Files.move(part, archive, StandardCopyOption.REPLACE_EXISTING);
+            else
+                Files.deleteIfExists(part);
+        }
+    }
+
+    private static void readAll(List<Source> plan, BlockingQueue<Block> queue, AtomicBoolean stop, Progress p) {
+        for (int i = 0; i < plan.size(); i++) {
+            if (stop.get() || !p.proceed())
+                return;
+            Source s = plan.get(i);
+            if (s.dir) {
+                if (!put(queue, new Block(i, 0, true, new byte[0], 0, null), stop))
+                    return;
+                continue;
+            }
+            boolean store = PRECOMPRESSED.contains(DiskUsage.extensionOf(s.name));
+            boolean started = false;
+            try (FileChannel in = FileChannel.open(s.file, StandardOpenOption.READ)) {
+                long left = s.size;
+                byte[] prev = null;
+                int seq = 0;
+                do {
+                    int len = (int) Math.min(BLOCK, left);
+                    byte[] raw = new byte[len];
+                    ByteBuffer bb = ByteBuffer.wrap(raw);
+                    while (bb.hasRemaining())
+                        if (in.read(bb) < 0)
+                            throw new IOException("file shrank while being compressed");
+                    left -= len;
+                    boolean last = left == 0;
+                    byte[] dict = prev;
+                    Future<byte[]> packed = store ? null : POOL.submit(() -> deflate(raw, len, dict, last));
+                    if (!put(queue, new Block(i, seq++, last, raw, len, packed), stop))
+                        return;
+                    started = true;
+                    prev = raw;
+                } while (left > 0);
+            } catch (IOException e) {
+                p.fail(s.file, e);
+                if (started && !put(queue, new Block(i, -1, true, null, 0, null), stop))
+                    return;
+            }
+        }
+        put(queue, END, stop);
+    }
+
+    private static boolean put(BlockingQueue<Block> queue, Block b, AtomicBoolean stop) {
+        try {
+            while (!stop.get())
+                if (queue.offer(b, 100, TimeUnit.MILLISECONDS))
+                    return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+
+    // Raw deflate of one block. Non-final blocks end on a sync flush (byte aligned), so the blocks
+    // simply concatenate into one valid deflate stream.
+    private static byte[] deflate(byte[] raw, int len, byte[] dict, boolean last) {
+        Deflater d = DEFLATER.get();
+        d.reset();
+        if (dict != null) {
+            int n = Math.min(DICT, dict.length);
+            d.setDictionary(dict, dict.length - n, n);
+        }
+        d.setInput(raw, 0, len);
+        if (last)
+            d.finish();
+        byte[] out = new byte[len + (len >>> 3) + 64];
+        int n = 0;
+        while (true) {
+            if (n == out.length)
+                out = Arrays.copyOf(out, out.length * 2);
+            n += d.deflate(out, n, out.length - n, last ? Deflater.NO_FLUSH : Deflater.SYNC_FLUSH);
+            if (last ? d.finished() : n < out.length)
+                break;
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    private static final class Writer {
+        private final FileChannel ch;
+        private final ByteBuffer buf = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+        private final ByteArrayOutputStream central = new ByteArrayOutputStream();
+        private long pos;
+        private long entries;
+
+        // the entry being written
+        private int open = -1;
+        private long headerPos;
+        private byte[] name;
+        private int method;
+        private boolean zip64;
+        private final CRC32 crc = new CRC32();
+        private long csize;
+        private long usize;
+
+        Writer(FileChannel ch) {
+            this.ch = ch;
+        }
+
+        // false when cancelled
+        boolean drain(List<Source> plan, BlockingQueue<Block> queue, Progress p) throws IOException {
+            while (true) {
+                Block b;
+                try {
+                    b = queue.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+                if (b == END)
+                    return true;
+                if (!p.proceed())
+                    return false;
+                if (b.seq < 0) {
+                    rollback();
+                    continue;
+                }
+                Source s = plan.get(b.entry);
+                byte[] packed = packed(b);
+                if (b.seq == 0)
+                    begin(b.entry, s, packed == null || (b.last && packed.length >= b.len) ? STORED : DEFLATED);
+                crc.update(b.raw, 0, b.len);
+                usize += b.len;
+                csize += method == DEFLATED ? packed.length : b.len;
+                // a single-block entry is complete already, so its local header goes out final
+                if (b.seq == 0)
+                    writeLocalHeader(s.mtime, b.last);
+                if (method == DEFLATED)
+                    write(packed, packed.length);
+                else
+                    write(b.raw, b.len);
+                p.bytes(b.len);
+                if (b.last) {
+                    end(s, b.seq == 0);
+                    if (!s.dir)
+                        p.file();
+                }
+            }
+        }
+
+        private static byte[] packed(Block b) throws IOException {
+            if (b.packed == null)
+                return null;
+            try {
+                return b.packed.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("interrupted");
+            } catch (ExecutionException e) {
+                throw new IOException("compression failed: " + e.getCause(), e.getCause());
+            }
+        }
+
+        private void begin(int index, Source s, int m) {
+            open = index;
+            headerPos = pos;
+            name = s.name.getBytes(StandardCharsets.UTF_8);
+            method = m;
+            zip64 = s.size >= ZIP64_FILE;
+            crc.reset();
+            csize = 0;
+            usize = 0;
+        }
+
+        private void writeLocalHeader(long mtime, boolean complete) throws IOException {
+            long crc32 = complete ? crc.getValue() : 0, c = complete ? csize : 0, u = complete ? usize : 0;
+            ByteBuffer h = ByteBuffer.allocate(30 + name.length + (zip64 ? 20 : 0)).order(ByteOrder.LITTLE_ENDIAN);
+            h.putInt(0x04034b50);
+            h.putShort((short) (zip64 ? 45 : 20));
+            h.putShort((short) 0x0800); // names are UTF-8
+            h.putShort((short) method);
+            h.putInt(dosTime(mtime));
+            h.putInt((int) crc32);
+            h.putInt(zip64 ? -1 : (int) c);
+            h.putInt(zip64 ? -1 : (int) u);
+            h.putShort((short) name.length);
+            h.putShort((short) (zip64 ? 20 : 0));
+            h.put(name);
+            if (zip64) {
+                h.putShort((short) 0x0001);
+                h.putShort((short) 16);
+                h.putLong(u);
+                h.putLong(c);
+            }
+            write(h.array(), h.capacity());
+        }
+
+        private void end(Source s, boolean single) throws IOException {
+            if (!single)
+                patchLocalHeader();
+            addCentral(s);
+            entries++;
+            open = -1;
+        }
+
+        private void patchLocalHeader() throws IOException {
+            flush();
+            ByteBuffer f = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN);
+            f.putInt((int) crc.getValue());
+            f.putInt(zip64 ? -1 : (int) csize);
+            f.putInt(zip64 ? -1 : (int) usize);
+            f.flip();
+            writeAt(f, headerPos + 14);
+            if (zip64) {
+                ByteBuffer z = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+                z.putLong(usize);
+                z.putLong(csize);
+                z.flip();
+                writeAt(z, headerPos + 30 + name.length + 4);
+            }
+        }
+
+        private void addCentral(Source s) {
+            boolean bigU = usize >= MAX32, bigC = csize >= MAX32, bigO = headerPos >= MAX32;
+            int extra = (bigU ? 8 : 0) + (bigC ? 8 : 0) + (bigO ? 8 : 0);
+            boolean z = extra > 0;
+            ByteBuffer c = ByteBuffer.allocate(46 + name.length + (z ? 4 + extra : 0)).order(ByteOrder.LITTLE_ENDIAN);
+            c.putInt(0x02014b50);
+            c.putShort((short) (z ? 45 : 20));
+            c.putShort((short) (z ? 45 : 20));
+            c.putShort((short) 0x0800);
+            c.putShort((short) method);
+            c.putInt(dosTime(s.mtime));
+            c.putInt((int) crc.getValue());
+            c.putInt(bigC ? -1 : (int) csize);
+            c.putInt(bigU ? -1 : (int) usize);
+            c.putShort((short) name.length);
+            c.putShort((short) (z ? 4 + extra : 0));
+            c.putShort((short) 0); // comment
+            c.putShort((short) 0); // disk
+            c.putShort((short) 0); // internal attributes
+            c.putInt(s.dir ? 0x10 : 0);
+            c.putInt(bigO ? -1 : (int) headerPos);
+            c.put(name);
+            if (z) {
+                c.putShort((short) 0x0001);
+                c.putShort((short) extra);
+                if (bigU)
+                    c.putLong(usize);
+                if (bigC)
+                    c.putLong(csize);
+                if (bigO)
+                    c.putLong(headerPos);
+            }
+            central.writeBytes(c.array());
+        }
+
+        // drop a half-written entry: the next one overwrites it
+        private void rollback() throws IOException {
+            if (open < 0)
+                return;
+            flush();
+            pos = headerPos;
+            ch.position(pos);
+            open = -1;
+        }
+
+        void finish() throws IOException {
+            long cdStart = pos;
+            byte[] cd = central.toByteArray();
+            write(cd, cd.length);
+            long cdSize = cd.length;
+            boolean z = entries >= 0xFFFF || cdStart >= MAX32 || cdSize >= MAX32;
+            ByteBuffer e = ByteBuffer.allocate((z ? 56 + 20 : 0) + 22).order(ByteOrder.LITTLE_ENDIAN);
+            if (z) {
+                long eocd64 = pos;
+                e.putInt(0x06064b50);
+                e.putLong(44);
+                e.putShort((short) 45);
+                e.putShort((short) 45);
+                e.putInt(0);
+                e.putInt(0);
+                e.putLong(entries);
+                e.putLong(entries);
+                e.putLong(cdSize);
+                e.putLong(cdStart);
+                e.putInt(0x07064b50);
+                e.putInt(0);
+                e.putLong(eocd64);
+                e.putInt(1);
+            }
+            e.putInt(0x06054b50);
+            e.putShort((short) 0);
+            e.putShort((short) 0);
+            e.putShort((short) Math.min(entries, 0xFFFF));
+            e.putShort((short) Math.min(entries, 0xFFFF));
+            e.putInt(cdSize >= MAX32 ? -1 : (int) cdSize);
+            e.putInt(cdStart >= MAX32 ? -1 : (int) cdStart);
+            e.putShort((short) 0);
+            write(e.array(), e.capacity());
+            flush();
+            ch.truncate(pos); // a rollback at the tail may have left bytes past the end
+            ch.force(false);
+        }
+
+        private void write(byte[] a, int len) throws IOException {
+            if (len > buf.remaining())
+                flush();
+            if (len >= buf.capacity()) {
+                ByteBuffer w = ByteBuffer.wrap(a, 0, len);
+                while (w.hasRemaining())
+                    ch.write(w);
+            } else {
+                buf.put(a, 0, len);
+            }
+            pos += len;
+        }
+
+        private void writeAt(ByteBuffer b, long at) throws IOException {
+            while (b.hasRemaining())
+                at += ch.write(b, at);
+        }
+
+        private void flush() throws IOException {
+            buf.flip();
+            while (buf.hasRemaining())
+                ch.write(buf);
+            buf.clear();
+        }
+    }
+
+    private static int dosTime(long millis) {
+        LocalDateTime t = LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+        if (t.getYear() < 1980)
+            return (1 << 21) | (1 << 16); // 1980-01-01 00:00
+        return (t.getYear() - 1980) << 25 | t.getMonthValue() << 21 | t.getDayOfMonth() << 16
+                | t.getHour() << 11 | t.getMinute() << 5 | t.getSecond() >> 1;
+    }
+
+    // ===== Extract =====
+
+    // Extracts every entry below outDir; entries that would land outside it are refused
+    static void unzip(Path archive, Path outDir, Progress p) throws IOException {
+        Path root = outDir.toAbsolutePath().normalize();
+        try (ZipFile zf = new ZipFile(archive.toFile())) {
+            Files.createDirectories(root);
+            List<ZipEntry> files = new ArrayList<>();
+            long total = 0;
+            for (Enumeration<? extends ZipEntry> en = zf.entries(); en.hasMoreElements(); ) {
+                ZipEntry z = en.nextElement();
+                Path target = target(root, z, p);
+                if (target == null)
+                    continue;
+                if (z.isDirectory()) {
+                    try {
+                        Files.createDirectories(target);
+                    } catch (IOException e) {
+                        p.fail(target, e);
+                    }
+                } else {
+                    files.add(z);
+                    total += Math.max(0, z.getSize());
+                }
+            }
+            p.addTotals(total, files.size());
+
+            Semaphore inFlight = new Semaphore(THREADS * 2);
+            List<Future<?>> pending = new ArrayList<>(files.size());
+            for (ZipEntry z : files) {
+                if (!p.proceed())
+                    break;
+                inFlight.acquireUninterruptibly();
+                pending.add(POOL.submit(() -> {
+                    try {
+                        extractOne(zf, z, root, p);
+                    } finally {
+                        inFlight.release();
+                    }
+                }));
+            }
+            for (Future<?> f : pending) {
+                try {
+                    f.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (ExecutionException e) {
+                    p.fail(archive, e.getCause() instanceof Exception ex ? ex : e);
+                }
+            }
+            // directory times last: extracting into them bumped their mtimes
+            for (Enumeration<? extends ZipEntry> en = zf.entries(); en.hasMoreElements(); ) {
+                ZipEntry z = en.nextElement();
+                Path target = z.isDirectory() ? target(root, z, null) : null;
+                if (target != null && z.getLastModifiedTime() != null)
+                    try {
+                        Files.setLastModifiedTime(target, z.getLastModifiedTime());
+                    } catch (IOException ignored) {
+                    }
+            }
+        }
+    }
+
+    private static Path target(Path root, ZipEntry z, Progress p) {
+        try {
+            Path t = root.resolve(z.getName()).normalize();
+            if (t.startsWith(root))
+                return t;
+        } catch (InvalidPathException ignored) {
+        }
+        if (p != null)
+            p.fail(root.resolve("?"), new IOException("unsafe or invalid entry name: " + z.getName()));
+        return null;
+    }
+
+    private static void extractOne(ZipFile zf, ZipEntry z, Path root, Progress p) {
+        Path target = root.resolve(z.getName()).normalize();
+        boolean complete = false;
+        try {
+            Files.createDirectories(target.getParent());
+            byte[] buf = EXTRACT_BUFFER.get();
+            try (InputStream in = zf.getInputStream(z); OutputStream out = Files.newOutputStream(target)) {
+                int n;
+                while ((n = in.read(buf)) > 0) {
+                    if (!p.proceed())
+                        return;
+                    out.write(buf, 0, n);
+                    p.bytes(n);
+                }
+            }
+            if (z.getLastModifiedTime() != null)
+                Files.setLastModifiedTime(target, z.getLastModifiedTime());
+            complete = true;
+            p.file();
+        } catch (IOException | RuntimeException e) {
+            p.fail(target, e);
+        } finally {
+            if (!complete)
+                try {
+                    Files.deleteIfExists(target);
+                } catch (IOException ignored) {
+                }
+        }
+    }
+}
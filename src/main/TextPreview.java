@@ -0,0 +1,352 @@
+// TextPreview.java — paged preview of a file of any size for the properties pane
+// - Nothing is read up front: each page reads just its own window (at most 64 KB) and decodes only that
+// - Text pages are whole lines (up to 200); binaries (NULs / control bytes in the first 8 KB) are
+//   shown as a hex dump instead
+// - A background thread builds a sparse line index (the offset of every 1024th line) for paging
+//   by line and jump-to-line (a 10 GB log of 100-byte lines needs ~100k marks, 800 KB); the
+//   preview is usable while the index is still being built
+// - Positional reads into heap buffers, no memory maps: close() stops the indexer and closes the
+//   channel, and the file is released at once (a mapping would pin it on Windows until GC)
+// - The preview pane closes it when it is removed
+
+package main;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+final class TextPreview implements AutoCloseable {
+
+    static final int PAGE_LINES = 200;
+    static final int HEX_ROWS = 256;
+    private static final int PAGE_BYTES = 64 * 1024;
+    private static final int SNIFF_BYTES = 8192;
+    private static final int MARK_EVERY = 1024;
+    private static final int LOOKBACK = 4096;
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    // [start, end) of the file; firstLine is 0-based, or -1 while the index hasn't got that far
+    record Page(long start, long end, String text, long firstLine) {}
+
+    private final Path path;
+    private final FileChannel ch;
+    private final long size;
+    private final boolean binary;
+
+    // line index: marks[k] is the offset of line k * MARK_EVERY; published through markCount
+    private volatile long[] marks = new long[64];
+    private volatile int markCount;
+    private volatile long indexedBytes;
+    private volatile long indexedLines;   // newlines seen in [0, indexedBytes)
+    private volatile boolean indexDone;
+    private volatile boolean closed;
+
+    private TextPreview(Path path, FileChannel ch) throws IOException {
+        this.path = path;
+        this.ch = ch;
+        this.size = ch.size();
+        this.binary = sniffBinary(bytes(0, (int) Math.min(SNIFF_BYTES, size)));
+        if (!binary) {
+            marks[0] = 0;
+            markCount = 1;
+            Thread t = new Thread(this::index, "text-index");
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            t.start();
+        }
+    }
+
+    static TextPreview open(Path p) throws IOException {
+        return new TextPreview(p, FileChannel.open(p, StandardOpenOption.READ));
+    }
+
+    Path path() {
+        return path;
+    }
+
+    long size() {
+        return size;
+    }
+
+    boolean binary() {
+        return binary;
+    }
+
+    boolean indexDone() {
+        return indexDone;
+    }
+
+    long indexedBytes() {
+        return indexedBytes;
+    }
+
+    // Total number of lines once the index is done, else -1
+    long lineCount() {
+        if (!indexDone)
+            return -1;
+        return indexedLines + (size > 0 && lastByte() != '\n' ? 1 : 0);
+    }
+
+    // ---- pages ----
+
+    Page pageAt(long offset) throws IOException {
+        offset = Math.max(0, Math.min(offset, size));
+        return binary ? hexPage(offset & ~15L) : textPage(lineStartBefore(offset));
+    }
+
+    Page first() throws IOException {
+        return pageAt(0);
+    }
+
+    Page next(Page p) throws IOException {
+        return p.end >= size ? p : pageAt(p.end);
+    }
+
+    // The page that ends where p starts
+    Page previous(Page p) throws IOException {
+        if (p.start == 0)
+            return p;
+        if (binary)
+            return pageAt(Math.max(0, p.start - HEX_ROWS * 16L));
+        long from = Math.max(0, p.start - PAGE_BYTES);
+        byte[] b = bytes(from, (int) (p.start - from));
+        int lines = 0;
+        int i = b.length - 1;
+        if (i >= 0 && b[i] == '\n')
+            i--; // the newline that ends the line just before p
+        for (; i >= 0; i--) {
+            if (b[i] == '\n' && ++lines == PAGE_LINES)
+                break;
+        }
+        return textPage(i >= 0 ? from + i + 1 : lineStartBefore(from));
+    }
+
+    Page last() throws IOException {
+        if (binary)
+            return pageAt(Math.max(0, (size - 1) & ~15L) - (HEX_ROWS - 1) * 16L);
+        return previous(new Page(size, size, "", -1));
+    }
+
+    // Page starting at a 0-based line, or null when the index hasn't reached that line yet
+    Page pageAtLine(long line) throws IOException {
+        long at = lineStart(line);
+        return at < 0 ? null : textPage(at);
+    }
+
+    private Page textPage(long start) throws IOException {
+        int len = (int) Math.min(PAGE_BYTES, size - start);
+        byte[] b = bytes(start, len);
+        int lines = 0, end = b.length;
+        for (int i = 0; i < b.length; i++) {
+            if (b[i] == '\n' && ++lines == PAGE_LINES) {
+                end = i + 1;
+                break;
+            }
+        }
+        if (lines < PAGE_LINES && start + b.length < size) {
+            // the window ran out mid-line: stop after the last full line, or at a character boundary
+            int nl = lastIndexOf(b, (byte) '\n');
+            end = nl >= 0 ? nl + 1 : utf8Boundary(b, b.length);
+        }
+        return new Page(start, start + end, decode(b, end), lineOf(start));
+    }
+
+    private Page hexPage(long start) throws IOException {
+        int len = (int) Math.min(HEX_ROWS * 16L, size - start);
+        byte[] b = bytes(start, len);
+        StringBuilder sb = new StringBuilder(HEX_ROWS * 80);
+        for (int row = 0; row < b.length; row += 16) {
+            sb.append(String.format("%010X  ", start + row));
+            for (int i = 0; i < 16; i++) {
+                if (row + i < b.length)
+                    sb.append(HEX[(b[row + i] >> 4) & 15]).append(HEX[b[row + i] & 15]).append(' ');
+                else
+                    sb.append("   ");
+                if (i == 7)
+                    sb.append(' ');
+            }
+            sb.append(' ');
+            for (int i = row; i < Math.min(row + 16, b.length); i++)
+                sb.append(b[i] >= 0x20 && b[i] < 0x7f ? (char) b[i] : '.');
+            sb.append('\n');
+        }
+        return new Page(start, start + b.length, sb.toString(), -1);
+    }
+
+    // Start of the line containing offset (looks back at most LOOKBACK bytes; very long lines are
+    // entered at a character boundary instead)
+    private long lineStartBefore(long offset) throws IOException {
+        if (offset == 0 || offset >= size)
+            return Math.min(offset, size);
+        long from = Math.max(0, offset - LOOKBACK);
+        byte[] b = bytes(from, (int) (offset - from));
+        int nl = lastIndexOf(b, (byte) '\n');
+        if (nl >= 0 || from == 0)
+            return from + nl + 1;
+        byte[] ahead = bytes(offset, (int) Math.min(4, size - offset));
+        int skip = 0;
+        while (skip < ahead.length && (ahead[skip] & 0xC0) == 0x80)
+            skip++;
+        return offset + skip;
+    }
+
+    // ---- line index ----
+
+    // Offset of a 0-based line, or -1 when it hasn't been indexed yet (or doesn't exist)
+    long lineStart(long line) throws IOException {
+        if (line < 0 || line > indexedLines)
+            return -1;
+        int m = (int) (line / MARK_EVERY);
+        if (m >= markCount)
+            return -1;
+        long pos = marks[m];
+        long skip = line - (long) m * MARK_EVERY;
+        while (skip > 0 && pos < size) {
+            int len = (int) Math.min(PAGE_BYTES, size - pos);
+            byte[] b = bytes(pos, len);
+            for (int i = 0; i < b.length; i++) {
+                if (b[i] == '\n' && --skip == 0)
+                    return pos + i + 1;
+            }
+            pos += len;
+        }
+        return skip == 0 ? pos : -1;
+    }
+
+    // 0-based line of an offset, or -1 when the index hasn't got that far
+    long lineOf(long offset) throws IOException {
+        if (offset > indexedBytes)
+            return -1;
+        int count = markCount;
+        long[] m = marks;
+        int k = Arrays.binarySearch(m, 0, count, offset);
+        if (k < 0)
+            k = -k - 2;
+        long line = (long) k * MARK_EVERY;
+        long pos = m[k];
+        while (pos < offset) {
+            int len = (int) Math.min(PAGE_BYTES, offset - pos);
+            byte[] b = bytes(pos, len);
+            for (byte x : b)
+                if (x == '\n')
+                    line++;
+            pos += len;
+        }
+        return line;
+    }
+
+    private void index() {
+        ByteBuffer bb = ByteBuffer.allocate(1 << 20);
+        byte[] buf = bb.array();
+        long pos = 0, lines = 0;
+        try {
+            while (pos < size && !closed) {
+                bb.clear();
+                int n = ch.read(bb, pos);
+                if (n <= 0)
+                    break; // truncated meanwhile
+                for (int i = 0; i < n; i++) {
+                    if (buf[i] == '\n' && ++lines % MARK_EVERY == 0)
+                        addMark(pos + i + 1);
+                }
+                pos += n;
+                indexedLines = lines;
+                indexedBytes = pos;
+            }
+        } catch (IOException e) {
+            return; // no index (or closed): paging by offset still works
+        }
+        indexDone = !closed;
+    }
+
+    private void addMark(long offset) {
+        long[] m = marks;
+        int c = markCount;
+        if (c == m.length) {
+            m = Arrays.copyOf(m, c * 2);
+            marks = m;
+        }
+        m[c] = offset;
+        markCount = c + 1;
+    }
+
+    // ---- bytes ----
+
+    // Reads exactly [pos, pos + len) (less if the file shrank); pages never touch the rest of the file
+    private byte[] bytes(long pos, int len) throws IOException {
+        ByteBuffer bb = ByteBuffer.allocate(Math.max(0, len));
+        while (bb.hasRemaining()) {
+            if (ch.read(bb, pos + bb.position()) < 0)
+                return Arrays.copyOf(bb.array(), bb.position());
+        }
+        return bb.array();
+    }
+
+    private byte lastByte() {
+        try {
+            return bytes(size - 1, 1)[0];
+        } catch (IOException e) {
+            return '\n';
+        }
+    }
+
+    private static boolean sniffBinary(byte[] b) {
+        int control = 0;
+        for (byte x : b) {
+            if (x == 0)
+                return true;
+            if (x >= 0 && x < 0x20 && x != '\n' && x != '\r' && x != '\t' && x != '\f' && x != 0x1b)
+                control++;
+        }
+        return b.length > 0 && control * 10 > b.length;
+    }
+
+    private static String decode(byte[] b, int len) {
+        CharsetDecoder d = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        try {
+            CharBuffer cb = d.decode(ByteBuffer.wrap(b, 0, len));
+            return cb.toString().replace("\r\n", "\n");
+        } catch (CharacterCodingException e) {
+            return new String(b, 0, len, StandardCharsets.ISO_8859_1);
+        }
+    }
+
+    private static int lastIndexOf(byte[] b, byte v) {
+        for (int i = b.length - 1; i >= 0; i--)
+            if (b[i] == v)
+                return i;
+        return -1;
+    }
+
+    // Largest end <= len that doesn't split a UTF-8 sequence
+    private static int utf8Boundary(byte[] b, int len) {
+        int i = len;
+        while (i > 0 && len - i < 4 && (b[i - 1] & 0xC0) == 0x80)
+            i--;
+        if (i > 0 && (b[i - 1] & 0x80) != 0) {
+            int lead = b[i - 1] & 0xFF;
+            int need = lead >= 0xF0 ? 4 : lead >= 0xE0 ? 3 : lead >= 0xC0 ? 2 : 1;
+            return len - (i - 1) >= need ? len : i - 1;
+        }
+        return len;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            ch.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
@@ -0,0 +1,489 @@
+// Trash.java — LCARS trash with an undo/redo journal
+// - Deleting renames the item into a trash folder on the same file system (O(1), no copying)
+// - Every delete / move / paste is appended to ~/.lcars_journal.log and replayed at startup,
+//   so undo and redo survive a restart
+// - Undo/redo and purging run on one background thread, in the order they were asked for
+// - Trashed items older than the retention period are purged in the background
+
+package main;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileStore;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+final class Trash {
+
+    enum Kind { DELETE, MOVE, COPY }
+
+    // DELETE: from = original location, to = place in the trash. MOVE/COPY: from = source, to = destination.
+    record Entry(Path from, Path to) {}
+
+    static final class Op {
+        final long id;
+        final Kind kind;
+        final long time;
+        final List<Entry> entries;
+
+        Op(long id, Kind kind, long time, List<Entry> entries) {
+            this.id = id;
+            this.kind = kind;
+            this.time = time;
+            this.entries = entries;
+        }
+
+        String describe() {
+            String what = entries.size() == 1 ? String.valueOf(entries.get(0).from().getFileName())
+                    : entries.size() + " items";
+            return kind + " " + what;
+        }
+    }
+
+    // moved = every rename actually performed (from, to), for caches and desktop icons
+    record Result(String description, List<Entry> moved, List<String> errors) {}
+
+    private static final long COMPACT_BYTES = 256 * 1024;
+
+    private final Path journal;
+    private final Path homeTrash;
+    private final Deque<Op> undo = new ArrayDeque<>();
+    private final Deque<Op> redo = new ArrayDeque<>();
+    private final Map<FileStore, Path> trashRoots = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService worker = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "lcars-trash");
+        t.setDaemon(true);
+        return t;
+    });
+    private volatile int retentionDays = 30;
+    private long nextId;
+
+    Trash(Path journal, Path homeTrash) {
+        this.journal = journal;
+        this.homeTrash = homeTrash;
+    }
+
+    // Replays the journal and schedules the hourly purge
+    void start(int retentionDays) {
+        this.retentionDays = retentionDays;
+        worker.execute(this::load);
+        worker.scheduleWithFixedDelay(() -> purge(false), 1, 60, TimeUnit.MINUTES);
+    }
+
+    void setRetentionDays(int days) {
+        retentionDays = days;
+        worker.execute(() -> purge(false));
+    }
+
+    synchronized Op peekUndo() {
+        return undo.peek();
+    }
+
+    synchronized Op peekRedo() {
+        return redo.peek();
+    }
+
+    // ===== Operations =====
+    CompletableFuture<Result> delete(List<Path> paths) {
+        return CompletableFuture.supplyAsync(() -> {
+            Op op = new Op(newId(), Kind.DELETE, System.currentTimeMillis(), new ArrayList<>());
+            List<Entry> moved = new ArrayList<>();
+            List<String> errors = new ArrayList<>();
+            int i = 0;
+            for (Path p : paths) {
+                try {
+                    Path slot = slot(op, i++, p, true);
+                    moveAny(p, slot);
+                    Entry e = new Entry(p, slot);
+                    op.entries.add(e);
+                    moved.add(e);
+                } catch (IOException e) {
+                    errors.add(p + ": " + message(e));
+                }
+            }
+            if (!op.entries.isEmpty())
+                push(op);
+            return new Result(op.describe(), moved, errors);
+        }, worker);
+    }
+
+    // A move or paste that already happened elsewhere (the transfer queue, desktop drops)
+    void record(Kind kind, List<Entry> entries) {
+        if (entries.isEmpty())
+            return;
+        worker.execute(() -> push(new Op(newId(), kind, System.currentTimeMillis(), new ArrayList<>(entries))));
+    }
+
+    CompletableFuture<Result> undo() {
+        return CompletableFuture.supplyAsync(() -> {
+            Op op;
+            synchronized (this) {
+                op = undo.poll();
+            }
+            if (op == null)
+                return new Result("NOTHING TO UNDO", List.of(), List.of());
+            List<Entry> moved = new ArrayList<>();
+            List<String> errors = new ArrayList<>();
+            StringBuilder log = new StringBuilder();
+            for (int i = 0; i < op.entries.size(); i++) {
+                Entry e = op.entries.get(i);
+                try {
+                    switch (op.kind) {
+                        case DELETE, MOVE -> {
+                            // the old spot may have been reused meanwhile: restore next to it
+                            Path back = FileTransfers.uniquePath(e.from());
+                            moveAny(e.to(), back);
+                            moved.add(new Entry(e.to(), back));
+                            if (!back.equals(e.from())) {
+                                // journaled too, so a redo after a restart starts from where it really is
+                                op.entries.set(i, new Entry(back, e.to()));
+                                log.append("F\t").append(op.id).append('\t').append(i).append('\t')
+                                        .append(escape(back.toString())).append('\n');
+                            }
+                        }
+                        case COPY -> {
+                            Path slot = slot(op, i, e.to(), true);
+                            moveAny(e.to(), slot);
+                            moved.add(new Entry(e.to(), slot));
+                        }
+                    }
+                } catch (IOException ex) {
+                    errors.add(e.to() + ": " + message(ex));
+                }
+            }
+            if (op.kind == Kind.DELETE && !op.entries.isEmpty()) {
+                try {
+                    Files.deleteIfExists(op.entries.get(0).to().getParent()); // the per-op folder, once empty
+                } catch (IOException ignored) {
+                }
+            }
+            synchronized (this) {
+                redo.push(op);
+            }
+            append(log + "U\t" + op.id);
+            return new Result("UNDO " + op.describe(), moved, errors);
+        }, worker);
+    }
+
+    CompletableFuture<Result> redo() {
+        return CompletableFuture.supplyAsync(() -> {
+            Op op;
+            synchronized (this) {
+                op = redo.poll();
+            }
+            if (op == null)
+                return new Result("NOTHING TO REDO", List.of(), List.of());
+            List<Entry> moved = new ArrayList<>();
+            List<String> errors = new ArrayList<>();
+            for (int i = 0; i < op.entries.size(); i++) {
+                Entry e = op.entries.get(i);
+                try {
+                    Path from = op.kind == Kind.COPY ? slot(op, i, e.to(), false) : e.from();
+                    moveAny(from, e.to());
+                    moved.add(new Entry(from, e.to()));
+                } catch (IOException ex) {
+                    errors.add(e.from() + ": " + message(ex));
+                }
+            }
+            synchronized (this) {
+                undo.push(op);
+            }
+            append("R\t" + op.id);
+            return new Result("REDO " + op.describe(), moved, errors);
+        }, worker);
+    }
+
+    // Deletes trashed items past the retention period (or everything when all = true)
+    CompletableFuture<Integer> emptyNow() {
+        return CompletableFuture.supplyAsync(() -> purge(true), worker);
+    }
+
+    private int purge(boolean all) {
+        long cutoff = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(retentionDays);
+        List<Op> expired = new ArrayList<>();
+        List<Op> undone;
+        synchronized (this) {
+            undone = new ArrayList<>(redo);
+            for (Op op : undo)
+                if (op.time < cutoff || (all && op.kind == Kind.DELETE))
+                    expired.add(op);
+            for (Op op : redo)
+                if (op.time < cutoff || (all && op.kind == Kind.COPY))
+                    expired.add(op);
+            undo.removeAll(expired);
+            redo.removeAll(expired);
+        }
+        int purged = 0;
+        for (Op op : expired) {
+            // only a done DELETE or an undone COPY has anything sitting in the trash
+            boolean holds = undone.contains(op) ? op.kind == Kind.COPY : op.kind == Kind.DELETE;
+            for (int i = 0; holds && i < op.entries.size(); i++) {
+                Entry e = op.entries.get(i);
+                try {
+                    Path slot = op.kind == Kind.DELETE ? e.to() : slot(op, i, e.to(), false);
+                    if (Files.exists(slot, LinkOption.NOFOLLOW_LINKS)) {
+                        deleteTree(slot);
+                        purged++;
+                    }
+                    Files.deleteIfExists(slot.getParent()); // the per-op folder, once empty
+                } catch (IOException ignored) {
+                }
+            }
+            append("P\t" + op.id);
+        }
+        return purged;
+    }
+
+    // ===== Journal =====
+    private synchronized long newId() {
+        long now = System.currentTimeMillis();
+        nextId = Math.max(nextId + 1, now);
+        return nextId;
+    }
+
+    private void push(Op op) {
+        synchronized (this) {
+            undo.push(op);
+            redo.clear(); // a new action ends the redo chain, like any editor
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append("O\t").append(op.id).append('\t').append(op.kind).append('\t').append(op.time)
+                .append('\t').append(op.entries.size());
+        for (Entry e : op.entries)
+            sb.append("\nE\t").append(escape(e.from().toString())).append('\t').append(escape(e.to().toString()));
+        append(sb.toString());
+    }
+
+    private void append(String lines) {
+        try (BufferedWriter w = Files.newBufferedWriter(journal, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            w.write(lines);
+            w.newLine();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private void load() {
+        if (!Files.exists(journal))
+            return;
+        Map<Long, Op> byId = new HashMap<>();
+        try (BufferedReader r = Files.newBufferedReader(journal, StandardCharsets.UTF_8)) {
+            String line;
+            Op open = null;
+            while ((line = r.readLine()) != null) {
+                String[] f = line.split("\t", -1);
+                try {
+                    switch (f[0]) {
+                        case "O" -> {
+                            open = new Op(Long.parseLong(f[1]), Kind.valueOf(f[2]), Long.parseLong(f[3]),
+                                    new ArrayList<>());
+                            byId.put(open.id, open);
+                            synchronized (this) {
+                                undo.push(open);
+                                redo.clear();
+                                nextId = Math.max(nextId, open.id);
+                            }
+                        }
+                        case "E" -> {
+                            if (open != null)
+                                open.entries.add(new Entry(Paths.get(unescape(f[1])), Paths.get(unescape(f[2]))));
+                        }
+                        case "F" -> {
+                            Op op = byId.get(Long.parseLong(f[1]));
+                            int i = Integer.parseInt(f[2]);
+                            if (op != null && i < op.entries.size())
+                                op.entries.set(i, new Entry(Paths.get(unescape(f[3])), op.entries.get(i).to()));
+                        }
+                        case "U" -> move(byId.get(Long.parseLong(f[1])), undo, redo);
+                        case "R" -> move(byId.get(Long.parseLong(f[1])), redo, undo);
+                        case "P" -> {
+                            Op op = byId.remove(Long.parseLong(f[1]));
+                            synchronized (this) {
+                                undo.remove(op);
+                                redo.remove(op);
+                            }
+                        }
+                        default -> {
+                        }
+                    }
+                } catch (RuntimeException ignored) {
+                    // torn or hand-edited line: skip it
+                }
+            }
+        } catch (IOException e) {
+            return;
+        }
+        try {
+            if (Files.size(journal) > COMPACT_BYTES)
+                compact();
+        } catch (IOException ignored) {
+        }
+        purge(false);
+    }
+
+    private synchronized void move(Op op, Deque<Op> from, Deque<Op> to) {
+        if (op != null && from.peek() == op) {
+            from.pop();
+            to.push(op);
+        }
+    }
+
+    // Rewrites the journal with only the live history: oldest first, then the undone ops re-marked
+    private void compact() throws IOException {
+        List<Op> ops = new ArrayList<>();
+        List<Op> undone = new ArrayList<>();
+        synchronized (this) {
+            undo.descendingIterator().forEachRemaining(ops::add);
+            ops.addAll(redo);
+            redo.descendingIterator().forEachRemaining(undone::add);
+        }
+        Path tmp = journal.resolveSibling(journal.getFileName() + ".tmp");
+        try (BufferedWriter w = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            for (Op op : ops) {
+                w.write("O\t" + op.id + "\t" + op.kind + "\t" + op.time + "\t" + op.entries.size());
+                w.newLine();
+                for (Entry e : op.entries) {
+                    w.write("E\t" + escape(e.from().toString()) + "\t" + escape(e.to().toString()));
+                    w.newLine();
+                }
+            }
+            for (Op op : undone) {
+                w.write("U\t" + op.id);
+                w.newLine();
+            }
+        }
+        Files.move(tmp, journal, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static String escape(String s) {
+        return s.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n");
+    }
+
+    private static String unescape(String s) {
+        StringBuilder sb = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '\\' && i + 1 < s.length()) {
+                char n = s.charAt(++i);
+                sb.append(n == 't' ? '\t' : n == 'n' ? '\n' : n);
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    // ===== Trash locations =====
+    // <trash root>/<op id>/<index>-<name>; the root lives on the item's own file system when possible
+    private Path slot(Op op, int index, Path item, boolean create) throws IOException {
+        Path dir = trashRootFor(item).resolve(Long.toString(op.id));
+        if (create)
+            Files.createDirectories(dir);
+        return dir.resolve(index + "-" + item.getFileName());
+    }
+
+    private Path trashRootFor(Path item) throws IOException {
+        Path probe = item.toAbsolutePath();
+        while (probe != null && !Files.exists(probe, LinkOption.NOFOLLOW_LINKS))
+            probe = probe.getParent();
+        if (probe == null)
+            return homeTrash;
+        FileStore store = Files.getFileStore(probe);
+        Path cached = trashRoots.get(store);
+        if (cached != null)
+            return cached;
+
+        Path root = homeTrash;
+        Files.createDirectories(homeTrash);
+        if (!store.equals(Files.getFileStore(homeTrash))) {
+            // top-most folder still on the same file system
+            Path top = probe;
+            while (top.getParent() != null && store.equals(Files.getFileStore(top.getParent())))
+                top = top.getParent();
+            Path candidate = top.resolve(".lcars_trash-" + System.getProperty("user.name", "user"));
+            try {
+                Files.createDirectories(candidate);
+                root = candidate;
+            } catch (IOException e) {
+                // read-only or no permission at the top: fall back to a (slower) move into the home trash
+            }
+        }
+        trashRoots.put(store, root);
+        return root;
+    }
+
+    // Rename when possible; across file systems copy the tree and then remove the source
+    private static void moveAny(Path from, Path to) throws IOException {
+        if (Files.exists(to, LinkOption.NOFOLLOW_LINKS))
+            throw new IOException("target already exists: " + to);
+        Files.createDirectories(to.getParent());
+        try {
+            Files.move(from, to, StandardCopyOption.ATOMIC_MOVE);
+            return;
+        } catch (IOException ignored) {
+            // not a same-volume rename
+        }
+        if (!Files.isDirectory(from, LinkOption.NOFOLLOW_LINKS)) {
+            Files.move(from, to, StandardCopyOption.COPY_ATTRIBUTES);
+            return;
+        }
+        Files.walkFileTree(from, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                Files.createDirectories(to.resolve(from.relativize(dir).toString()));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.copy(file, to.resolve(from.relativize(file).toString()), StandardCopyOption.COPY_ATTRIBUTES,
+                        LinkOption.NOFOLLOW_LINKS);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        deleteTree(from);
+    }
+
+    private static void deleteTree(Path root) {
+        try {
+            Files.walkFileTree(root, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                    Files.deleteIfExists(file);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+                    Files.deleteIfExists(dir);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException ignored) {
+        }
+    }
+
+    private static String message(IOException e) {
+        return e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+    }
+}
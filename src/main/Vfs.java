@@ -0,0 +1,453 @@
+// Vfs.java — pluggable file sources under the explorer
+// - A Provider lists, stats and opens the paths of one source: any NIO file system (zip archives)
+//   or a WebDAV server; plain local folders stay ordinary java.io.File and need no provider
+// - VfsFile stands in for java.io.File, so the list, grid, breadcrumbs and properties take any source;
+//   toPath() hands out the NIO Path where the source has one (copy, hash and folder sizes then just work)
+// - A VfsFile answers isDirectory()/length()/lastModified() from the listing it came from, so drawing
+//   a remote folder never touches the network
+// - Remote listings are fetched on a small background pool, de-duplicated while in flight and cached
+//   for REMOTE_TTL_MS; local sources (archives) are listed directly
+
+package main;
+
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+final class Vfs {
+
+    record Stat(String name, boolean dir, long size, long mtime) {}
+
+    interface Provider {
+        // what the root folder is called in breadcrumbs and listings
+        String label();
+
+        // the local file this source was opened from (an archive), or null
+        File container();
+
+        // slow listings: fetched in the background and cached
+        boolean remote();
+
+        // paths are "/"-rooted with "/" as separator; dir is never empty
+        List<Stat> list(String dir) throws IOException;
+
+        InputStream open(String path) throws IOException;
+
+        // the NIO path behind a Vfs path, or null when the source has none
+        default Path nioPath(String path) {
+            return null;
+        }
+
+        // something JavaFX can load an Image from, or null
+        default URI uri(String path) {
+            return null;
+        }
+    }
+
+    static final long REMOTE_TTL_MS = 30_000;
+    private static final int MAX_LISTINGS = 512;
+
+    private record Key(Provider provider, String path) {}
+
+    private record Listing(List<Stat> stats, long fetchedAt) {}
+
+    private static final Map<Key, Listing> LISTINGS = new ConcurrentHashMap<>();
+    private static final Map<Key, CompletableFuture<List<Stat>>> IN_FLIGHT = new ConcurrentHashMap<>();
+    private static final ExecutorService IO = Executors.newFixedThreadPool(4, r -> {
+        Thread t = new Thread(r, "vfs-io");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private Vfs() {
+    }
+
+    // The source's root folder, ready for navigateTo
+    static VfsFile root(Provider p) {
+        return new VfsFile(p, "/", new Stat(p.label(), true, 0, 0));
+    }
+
+    static boolean isVirtual(File f) {
+        return f instanceof VfsFile;
+    }
+
+    // true when NIO code (copy, hash, walkers, watchers) can work on f.toPath()
+    static boolean hasPath(File f) {
+        return !(f instanceof VfsFile v) || v.provider.nioPath(v.path) != null;
+    }
+
+    // Real folder holding the outermost source an entry lives in (null for remote sources)
+    static File hostFolder(File f) {
+        while (f instanceof VfsFile v) {
+            f = v.provider.container();
+            if (f == null)
+                return null;
+        }
+        return f.getParentFile();
+    }
+
+    // ===== Listings =====
+
+    static boolean isCached(VfsFile dir) {
+        if (!dir.provider.remote())
+            return true;
+        Listing l = LISTINGS.get(new Key(dir.provider, dir.path));
+        return l != null && System.currentTimeMillis() - l.fetchedAt < REMOTE_TTL_MS;
+    }
+
+    static CompletableFuture<File[]> listAsync(VfsFile dir) {
+        if (isCached(dir)) {
+            try {
+                return CompletableFuture.completedFuture(listNow(dir));
+            } catch (IOException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+        return fetch(dir).thenApply(stats -> wrap(dir, stats));
+    }
+
+    // Blocking; served from the cache when it is fresh
+    static File[] listNow(VfsFile dir) throws IOException {
+        if (!dir.provider.remote())
+            return wrap(dir, dir.provider.list(dir.path));
+        Listing l = LISTINGS.get(new Key(dir.provider, dir.path));
+        if (l != null && System.currentTimeMillis() - l.fetchedAt < REMOTE_TTL_MS)
+            return wrap(dir, l.stats);
+        try {
+            return wrap(dir, fetch(dir).join());
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof IOException io ? io : new IOException(e.getCause());
+        }
+    }
+
+    static void invalidate(VfsFile dir) {
+        LISTINGS.remove(new Key(dir.provider, dir.path));
+    }
+
+    private static CompletableFuture<List<Stat>> fetch(VfsFile dir) {
+        Key key = new Key(dir.provider, dir.path);
+        CompletableFuture<List<Stat>> f = IN_FLIGHT.computeIfAbsent(key, k -> CompletableFuture.supplyAsync(() -> {
+            try {
+                List<Stat> stats = List.copyOf(k.provider.list(k.path));
+                if (LISTINGS.size() >= MAX_LISTINGS)
+                    evictOldest();
+                LISTINGS.put(k, new Listing(stats, System.currentTimeMillis()));
+                return stats;
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, IO));
+        f.whenComplete((r, e) -> IN_FLIGHT.remove(key, f));
+        return f;
+    }
+
+    private static void evictOldest() {
+        LISTINGS.entrySet().stream()
+                .sorted(Comparator.comparingLong(e -> e.getValue().fetchedAt))
+                .limit(MAX_LISTINGS / 4)
+                .map(Map.Entry::getKey)
+                .toList()
+                .forEach(LISTINGS::remove);
+    }
+
+    private static File[] wrap(VfsFile dir, List<Stat> stats) {
+        File[] out = new File[stats.size()];
+        for (int i = 0; i < out.length; i++)
+            out[i] = new VfsFile(dir.provider, child(dir.path, stats.get(i).name()), stats.get(i));
+        return out;
+    }
+
+    static String child(String dir, String name) {
+        return dir.endsWith("/") ? dir + name : dir + "/" + name;
+    }
+
+    static String parent(String path) {
+        int slash = path.lastIndexOf('/');
+        return slash <= 0 ? "/" : path.substring(0, slash);
+    }
+
+    // Desktop apps need a real file: stream the entry out to a temp folder and hand that over
+    static File extractForOpen(VfsFile f) throws IOException {
+        Path dir = Files.createTempDirectory("lcars-vfs-");
+        Path out = dir.resolve(f.getName());
+        try (InputStream in = f.provider.open(f.path)) {
+            Files.copy(in, out, StandardCopyOption.REPLACE_EXISTING);
+        }
+        out.toFile().deleteOnExit();
+        dir.toFile().deleteOnExit();
+        return out.toFile();
+    }
+
+    // A path inside a provider. Read-only: every mutator reports failure.
+    static final class VfsFile extends File {
+        final Provider provider;
+        final String path;
+        private final Stat stat;
+
+        VfsFile(Provider provider, String path, Stat stat) {
+            super(displayPath(provider, path));
+            this.provider = provider;
+            this.path = path;
+            this.stat = stat;
+        }
+
+        private static String displayPath(Provider p, String path) {
+            String base = p.container() != null ? p.container().getPath() : p.label();
+            return path.equals("/") ? base : base + path.replace('/', File.separatorChar);
+        }
+
+        Stat stat() {
+            return stat;
+        }
+
+        InputStream open() throws IOException {
+            return provider.open(path);
+        }
+
+        @Override
+        public String getName() {
+            return path.equals("/") ? provider.label() : stat.name();
+        }
+
+        @Override
+        public Path toPath() {
+            Path p = provider.nioPath(path);
+            if (p == null)
+                throw new UnsupportedOperationException("no local path for " + getPath());
+            return p;
+        }
+
+        @Override
+        public URI toURI() {
+            URI u = provider.uri(path);
+            return u != null ? u : super.toURI();
+        }
+
+        @Override
+        public boolean exists() {
+            return true;
+        }
+
+        @Override
+        public boolean isDirectory() {
+            return stat.dir();
+        }
+
+        @Override
+        public boolean isFile() {
+            return !stat.dir();
+        }
+
+        @Override
+        public boolean isHidden() {
+            return getName().startsWith(".");
+        }
+
+        @Override
+        public boolean canRead() {
+            return true;
+        }
+
+        @Override
+        public boolean canWrite() {
+            return false;
+        }
+
+        @Override
+        public long length() {
+            return stat.dir() ? 0 : stat.size();
+        }
+
+        @Override
+        public long lastModified() {
+            return stat.mtime();
+        }
+
+        @Override
+        public String[] list() {
+            File[] files = listFiles();
+            if (files == null)
+                return null;
+            String[] names = new String[files.length];
+            for (int i = 0; i < files.length; i++)
+                names[i] = files[i].getName();
+            return names;
+        }
+
+        @Override
+        public File[] listFiles() {
+            if (!stat.dir())
+                return null;
+            try {
+                return listNow(this);
+            } catch (IOException e) {
+                return null;
+            }
+        }
+
+        @Override
+        public File getParentFile() {
+            if (path.equals("/"))
+                return provider.container() != null ? provider.container().getParentFile() : null;
+            String parent = parent(path);
+            return parent.equals("/") ? root(provider)
+                    : new VfsFile(provider, parent, new Stat(parent.substring(parent.lastIndexOf('/') + 1), true, 0, 0));
+        }
+
+        @Override
+        public String getParent() {
+            File p = getParentFile();
+            return p != null ? p.getPath() : null;
+        }
+
+        @Override
+        public File getAbsoluteFile() {
+            return this;
+        }
+
+        @Override
+        public File getCanonicalFile() {
+            return this;
+        }
+
+        @Override
+        public boolean delete() {
+            return false;
+        }
+
+        @Override
+        public boolean renameTo(File dest) {
+            return false;
+        }
+
+        @Override
+        public boolean mkdir() {
+            return false;
+        }
+
+        @Override
+        public boolean mkdirs() {
+            return false;
+        }
+    }
+
+    // ===== Providers =====
+
+    // A mounted file system's root, kept open until closed (see Archives)
+    interface Mounted extends AutoCloseable {
+        Path root();
+
+        @Override
+        void close();
+    }
+
+    // Mounts (or re-mounts, after an eviction) the file system behind a PathProvider
+    @FunctionalInterface
+    interface Mounter {
+        Mounted acquire() throws IOException;
+    }
+
+    // Any NIO file system, mounted on demand (used for archives). Every use holds the mount, and a
+    // mount that was closed meanwhile is mounted again, so old VfsFiles (history, tree) keep working.
+    static final class PathProvider implements Provider {
+        private final String label;
+        private final Mounter mounter;
+        private final File container;
+
+        PathProvider(String label, Mounter mounter, File container) {
+            this.label = label;
+            this.mounter = mounter;
+            this.container = container;
+        }
+
+        @Override
+        public String label() {
+            return label;
+        }
+
+        @Override
+        public File container() {
+            return container;
+        }
+
+        @Override
+        public boolean remote() {
+            return false;
+        }
+
+        @Override
+        public List<Stat> list(String dir) throws IOException {
+            List<Stat> out = new ArrayList<>();
+            try (Mounted m = mounter.acquire();
+                 DirectoryStream<Path> ds = Files.newDirectoryStream(resolve(m.root(), dir))) {
+                for (Path p : ds) {
+                    BasicFileAttributes a = Files.readAttributes(p, BasicFileAttributes.class);
+                    String name = p.getFileName().toString();
+                    if (name.endsWith("/"))
+                        name = name.substring(0, name.length() - 1);
+                    out.add(new Stat(name, a.isDirectory(), a.size(), a.lastModifiedTime().toMillis()));
+                }
+            } catch (DirectoryIteratorException e) {
+                throw e.getCause();
+            }
+            return out;
+        }
+
+        @Override
+        public InputStream open(String path) throws IOException {
+            Mounted m = mounter.acquire();
+            try {
+                return new FilterInputStream(Files.newInputStream(resolve(m.root(), path))) {
+                    @Override
+                    public void close() throws IOException {
+                        try {
+                            super.close();
+                        } finally {
+                            m.close();
+                        }
+                    }
+                };
+            } catch (IOException | RuntimeException e) {
+                m.close();
+                throw e;
+            }
+        }
+
+        // Only valid while the mount stays open: long-running users hold it with Archives.hold
+        @Override
+        public Path nioPath(String path) {
+            try (Mounted m = mounter.acquire()) {
+                return resolve(m.root(), path);
+            } catch (IOException e) {
+                return null; // the archive is gone
+            }
+        }
+
+        @Override
+        public URI uri(String path) {
+            Path p = nioPath(path);
+            return p != null ? p.toUri() : null;
+        }
+
+        private static Path resolve(Path root, String path) {
+            return path.equals("/") ? root : root.resolve(path.substring(1));
+        }
+    }
+}